@@ -0,0 +1,219 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An interval tree that also answers aggregate queries, such as the total or maximum
+ * of a value over all intervals overlapping a window, without visiting every match
+ *
+ * Each node keeps prefix aggregates over its start ordered and end ordered intervals and
+ * the aggregate of its whole subtree with the subtree's minimum end and maximum start.
+ * A query takes one prefix per node on the search paths and whole subtree aggregates
+ * wherever a subtree lies entirely inside the window, so it costs O(log² n) combines
+ * regardless of how many intervals match. The annotations are rebuilt on the first
+ * aggregate query after each rebuild of the tree
+ *
+ * @param <Type> the type of objects to associate
+ * @param <A>    the type of the aggregate
+ */
+public class AggregatingIntervalTree<Type, A> extends IntervalTree<Type> {
+
+    private final IntervalAggregator<Type, A> aggregator;
+
+    private transient AggregateNode<A> aggregateHead;
+    private transient IntervalNode<Type> aggregatedHead;
+
+    /**
+     * Instantiate a new interval tree with no intervals
+     *
+     * @param aggregator how to fold intervals into aggregates
+     */
+    public AggregatingIntervalTree(IntervalAggregator<Type, A> aggregator) {
+        super();
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Instantiate and build an interval tree with a preset list of intervals
+     *
+     * @param intervalList the list of intervals to use
+     * @param aggregator   how to fold intervals into aggregates
+     */
+    public AggregatingIntervalTree(List<Interval<Type>> intervalList, IntervalAggregator<Type, A> aggregator) {
+        super(intervalList);
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Aggregate all intervals containing time
+     * Will rebuild the tree if out of sync
+     *
+     * @param time the time to stab
+     * @return the combined aggregate of all intervals that contain time
+     */
+    @SuppressWarnings("unchecked")
+    public A aggregate(long time) {
+        AggregateNode<A> node = aggregateHead();
+        A result = aggregator.identity();
+        while (node != null) {
+            if (time < node.center) {
+                int count = EndpointIndex.upperBound(node.starts, 0, node.starts.length, time);
+                result = aggregator.combine(result, (A) node.startPrefix[count]);
+                node = node.left;
+            } else {
+                int count = countEndingAfter(node.ends, time);
+                result = aggregator.combine(result, (A) node.endPrefix[count]);
+                node = time > node.center ? node.right : null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Aggregate all intervals intersecting [start, end)
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the combined aggregate of all intervals that intersect target
+     */
+    public A aggregate(long start, long end) {
+        if (end <= start) {
+            // an empty target matches no prefix, fall back to visiting
+            final Object[] result = {aggregator.identity()};
+            forEachIntersecting(start, end, new Consumer<Interval<Type>>() {
+                @SuppressWarnings("unchecked")
+                public void accept(Interval<Type> interval) {
+                    result[0] = aggregator.combine((A) result[0], aggregator.extract(interval));
+                }
+            });
+            @SuppressWarnings("unchecked")
+            A aggregate = (A) result[0];
+            return aggregate;
+        }
+        return aggregate(aggregateHead(), start, end);
+    }
+
+    @SuppressWarnings("unchecked")
+    private A aggregate(AggregateNode<A> node, long start, long end) {
+        if (node == null)
+            return aggregator.identity();
+        if (node.minEnd > start && node.maxStart < end)
+            return node.subtree;
+
+        A result;
+        if (start < node.center) {
+            int count = EndpointIndex.lowerBound(node.starts, 0, node.starts.length, end);
+            result = (A) node.startPrefix[count];
+        } else {
+            int count = countEndingAfter(node.ends, start);
+            result = (A) node.endPrefix[count];
+        }
+
+        if (start < node.center)
+            result = aggregator.combine(result, aggregate(node.left, start, end));
+        if (end > node.center)
+            result = aggregator.combine(result, aggregate(node.right, start, end));
+        return result;
+    }
+
+    /**
+     * @return the aggregate tree matching the current head, rebuilding the tree and annotations if needed
+     */
+    private AggregateNode<A> aggregateHead() {
+        build();
+        IntervalNode<Type> head = getHead();
+        if (aggregatedHead != head) {
+            aggregateHead = annotate(head);
+            aggregatedHead = head;
+        }
+        return aggregateHead;
+    }
+
+    private AggregateNode<A> annotate(IntervalNode<Type> node) {
+        if (node == null)
+            return null;
+
+        AggregateNode<A> annotated = new AggregateNode<A>();
+        annotated.center = node.getCenter();
+        annotated.left = annotate(node.getLeft());
+        annotated.right = annotate(node.getRight());
+
+        Interval<Type>[] byStart = node.getStartOrdered();
+        Interval<Type>[] byEnd = node.getEndOrdered();
+        annotated.starts = new long[byStart.length];
+        annotated.ends = new long[byEnd.length];
+        annotated.startPrefix = new Object[byStart.length + 1];
+        annotated.endPrefix = new Object[byEnd.length + 1];
+
+        A startAggregate = aggregator.identity();
+        A endAggregate = aggregator.identity();
+        annotated.startPrefix[0] = startAggregate;
+        annotated.endPrefix[0] = endAggregate;
+        long minEnd = Long.MAX_VALUE;
+        long maxStart = Long.MIN_VALUE;
+        for (int i = 0; i < byStart.length; i++) {
+            annotated.starts[i] = byStart[i].getStart();
+            startAggregate = aggregator.combine(startAggregate, aggregator.extract(byStart[i]));
+            annotated.startPrefix[i + 1] = startAggregate;
+            maxStart = Math.max(maxStart, byStart[i].getStart());
+
+            annotated.ends[i] = byEnd[i].getEnd();
+            endAggregate = aggregator.combine(endAggregate, aggregator.extract(byEnd[i]));
+            annotated.endPrefix[i + 1] = endAggregate;
+            minEnd = Math.min(minEnd, byEnd[i].getEnd());
+        }
+
+        A subtree = startAggregate;
+        if (annotated.left != null) {
+            subtree = aggregator.combine(subtree, annotated.left.subtree);
+            minEnd = Math.min(minEnd, annotated.left.minEnd);
+            maxStart = Math.max(maxStart, annotated.left.maxStart);
+        }
+        if (annotated.right != null) {
+            subtree = aggregator.combine(subtree, annotated.right.subtree);
+            minEnd = Math.min(minEnd, annotated.right.minEnd);
+            maxStart = Math.max(maxStart, annotated.right.maxStart);
+        }
+        annotated.subtree = subtree;
+        annotated.minEnd = minEnd;
+        annotated.maxStart = maxStart;
+        return annotated;
+    }
+
+    /**
+     * @param ends ends in descending order
+     * @return the number of ends greater than time
+     */
+    private static int countEndingAfter(long[] ends, long time) {
+        int from = 0;
+        int to = ends.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (ends[middle] > time)
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+
+    /**
+     * The aggregate annotations of one {@link IntervalNode}
+     */
+    private static class AggregateNode<A> {
+
+        long center;
+        long[] starts;
+        long[] ends;
+        Object[] startPrefix;
+        Object[] endPrefix;
+        A subtree;
+        long minEnd;
+        long maxStart;
+
+        AggregateNode<A> left;
+        AggregateNode<A> right;
+    }
+}
@@ -0,0 +1,107 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.Serializable;
+
+/**
+ * A node of the self-balancing (AVL) interval tree, holding exactly one interval
+ * and annotated with the maximum end of its subtree
+ *
+ * Nodes are ordered by start, then end, then insertion id, so equal intervals
+ * added several times live in distinct nodes. A node keeps its identity for as long
+ * as its interval is stored, so it doubles as the interval's handle
+ *
+ * @param <Type> the type of data being stored
+ */
+class BalancedIntervalNode<Type> implements IntervalHandle<Type>, Serializable {
+
+    final long id;
+    long start;
+    long end;
+    Interval<Type> interval;
+
+    long maxEnd;
+    int height;
+
+    BalancedIntervalNode<Type> left;
+    BalancedIntervalNode<Type> right;
+
+    BalancedIntervalNode(long id, Interval<Type> interval) {
+        this.id = id;
+        this.interval = interval;
+        this.start = interval.getStart();
+        this.end = interval.getEnd();
+        this.maxEnd = end;
+        this.height = 1;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public Type getData() {
+        return interval.getData();
+    }
+
+    public Interval<Type> getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param start the start of the other key
+     * @param end   the end of the other key
+     * @param id    the id of the other key
+     * @return negative, zero or positive as the other key sorts before, equal to or after this node
+     */
+    int compareKey(long start, long end, long id) {
+        if (start != this.start)
+            return start < this.start ? -1 : 1;
+        if (end != this.end)
+            return end < this.end ? -1 : 1;
+        if (id != this.id)
+            return id < this.id ? -1 : 1;
+        return 0;
+    }
+
+    /**
+     * Recompute height and max end from the children
+     */
+    void update() {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        height = Math.max(leftHeight, rightHeight) + 1;
+
+        long max = end;
+        if (left != null && left.maxEnd > max)
+            max = left.maxEnd;
+        if (right != null && right.maxEnd > max)
+            max = right.maxEnd;
+        maxEnd = max;
+    }
+
+    /**
+     * Reset the links and annotations of a node taken out of its tree
+     */
+    void detach() {
+        left = null;
+        right = null;
+        height = 1;
+        maxEnd = end;
+    }
+
+    int balance() {
+        return height(left) - height(right);
+    }
+
+    static int height(BalancedIntervalNode<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + "," + end + "]:(" + interval.getData() + ") max=" + maxEnd;
+    }
+}
@@ -0,0 +1,528 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A self-balancing variant of the {@link IntervalTree}: an AVL tree keyed by interval
+ * start and annotated with the maximum end of every subtree
+ *
+ * Unlike IntervalTree, adding or removing an interval updates the structure in place
+ * in O(log n), so there is never a rebuild between mutations and queries. Stabbing and
+ * interval queries cost O(min(n, k log n)) for k results: the max end annotation prunes
+ * subtrees holding no match, but each match may sit on a path of its own
+ *
+ * @param <Type> the type of objects to associate
+ */
+public class BalancedIntervalTree<Type> implements Serializable {
+
+    private BalancedIntervalNode<Type> root;
+    private int size;
+    private long nextId;
+
+    /**
+     * Instantiate a new interval tree with no intervals
+     */
+    public BalancedIntervalTree() {
+        this.root = null;
+        this.size = 0;
+        this.nextId = 0;
+    }
+
+    /**
+     * Instantiate an interval tree with a preset list of intervals
+     *
+     * @param intervalList the list of intervals to use
+     */
+    public BalancedIntervalTree(List<Interval<Type>> intervalList) {
+        this();
+        for (Interval<Type> interval : intervalList)
+            addInterval(interval);
+    }
+
+    /**
+     * Perform a stabbing query, returning the associated data
+     *
+     * @param time the time to stab
+     * @return the data associated with all intervals that contain time
+     */
+    public List<Type> get(long time) {
+        List<Type> result = new ArrayList<Type>();
+        forEachContaining(time, new DataCollectingConsumer<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform a stabbing query, returning the interval objects
+     *
+     * @param time the time to stab
+     * @return all intervals that contain time, ordered by start
+     */
+    public List<Interval<Type>> getIntervals(long time) {
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        forEachContaining(time, new CollectingConsumer<Interval<Type>>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query, returning the associated data
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals that intersect target
+     */
+    public List<Type> get(long start, long end) {
+        List<Type> result = new ArrayList<Type>();
+        forEachIntersecting(start, end, new DataCollectingConsumer<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query, returning the associated data
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals that intersect target
+     */
+    public List<Type> get(Date start, Date end) {
+        return get(start.getTime(), end.getTime());
+    }
+
+    /**
+     * Perform an interval query, returning the interval objects
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return all intervals that intersect target, ordered by start
+     */
+    public List<Interval<Type>> getIntervals(long start, long end) {
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        forEachIntersecting(start, end, new CollectingConsumer<Interval<Type>>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query, returning the interval objects
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return all intervals that intersect target, ordered by start
+     */
+    public List<Interval<Type>> getIntervals(Date start, Date end) {
+        return getIntervals(start.getTime(), end.getTime());
+    }
+
+    /**
+     * Perform a stabbing query without allocating, passing every interval that contains time to the consumer
+     *
+     * @param time     the time to stab
+     * @param consumer receives each interval that contains time, ordered by start
+     */
+    public void forEachContaining(long time, Consumer<? super Interval<Type>> consumer) {
+        stab(root, time, consumer);
+    }
+
+    /**
+     * Perform an interval query without allocating, passing every interval that intersects target to the consumer
+     *
+     * @param start    the start of the interval to check
+     * @param end      the end of the interval to check
+     * @param consumer receives each interval that intersects target, ordered by start
+     */
+    public void forEachIntersecting(long start, long end, Consumer<? super Interval<Type>> consumer) {
+        query(root, start, end, consumer);
+    }
+
+    /**
+     * Perform a stabbing query into a reusable buffer, which is cleared first
+     *
+     * @param time   the time to stab
+     * @param buffer the buffer to fill with all intervals that contain time
+     * @return the number of intervals found
+     */
+    public int getIntervals(long time, IntervalBuffer<Type> buffer) {
+        buffer.clear();
+        forEachContaining(time, buffer);
+        return buffer.size();
+    }
+
+    /**
+     * Perform an interval query into a reusable buffer, which is cleared first
+     *
+     * @param start  the start of the interval to check
+     * @param end    the end of the interval to check
+     * @param buffer the buffer to fill with all intervals that intersect target
+     * @return the number of intervals found
+     */
+    public int getIntervals(long start, long end, IntervalBuffer<Type> buffer) {
+        buffer.clear();
+        forEachIntersecting(start, end, buffer);
+        return buffer.size();
+    }
+
+    /**
+     * Add an interval object to the tree in O(log n)
+     *
+     * The start and end are captured at insertion time, so the interval must
+     * not be modified while it is part of the tree other than by {@link #update}
+     *
+     * @param interval the interval object to add
+     * @return a handle to remove or move this very entry later
+     */
+    public IntervalHandle<Type> addInterval(Interval<Type> interval) {
+        BalancedIntervalNode<Type> node = new BalancedIntervalNode<Type>(nextId++, interval);
+        root = insert(root, node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Add an interval object to the tree in O(log n)
+     *
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data to associate
+     * @return a handle to remove or move this very entry later
+     */
+    public IntervalHandle<Type> addInterval(long begin, long end, Type data) {
+        return addInterval(new Interval<Type>(begin, end, data));
+    }
+
+    /**
+     * Add an interval object to the tree in O(log n)
+     *
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data to associate
+     * @return a handle to remove or move this very entry later
+     */
+    public IntervalHandle<Type> addInterval(Date begin, Date end, Type data) {
+        return addInterval(begin.getTime(), end.getTime(), data);
+    }
+
+    /**
+     * Remove the entry behind a handle in O(log n)
+     *
+     * @param handle the handle returned when the interval was added
+     * @return false if the entry is no longer part of this tree
+     */
+    public boolean remove(IntervalHandle<Type> handle) {
+        BalancedIntervalNode<Type> node = locate(handle);
+        if (node == null)
+            return false;
+        root = remove(root, node.start, node.end, node.id);
+        node.detach();
+        size--;
+        return true;
+    }
+
+    /**
+     * Move the entry behind a handle to a new start and end in O(log n),
+     * updating its interval object accordingly
+     *
+     * @param handle the handle returned when the interval was added
+     * @param start  the new start of the interval
+     * @param end    the new end of the interval
+     * @return false if the entry is no longer part of this tree
+     */
+    public boolean update(IntervalHandle<Type> handle, long start, long end) {
+        BalancedIntervalNode<Type> node = locate(handle);
+        if (node == null)
+            return false;
+        root = remove(root, node.start, node.end, node.id);
+        node.detach();
+
+        node.start = start;
+        node.end = end;
+        node.interval.setStart(start);
+        node.interval.setEnd(end);
+        node.maxEnd = end;
+        root = insert(root, node);
+        return true;
+    }
+
+    /**
+     * Move the entry behind a handle to a new start and end in O(log n)
+     *
+     * @param handle the handle returned when the interval was added
+     * @param start  the new start of the interval
+     * @param end    the new end of the interval
+     * @return false if the entry is no longer part of this tree
+     */
+    public boolean update(IntervalHandle<Type> handle, Date start, Date end) {
+        return update(handle, start.getTime(), end.getTime());
+    }
+
+    /**
+     * Remove one occurrence of an interval object from the tree
+     * Runs in O(log n) plus the number of stored intervals with the same start and end
+     *
+     * @param interval the interval object to remove
+     * @return true if an equal interval was found and removed
+     */
+    public boolean removeInterval(Interval<Type> interval) {
+        BalancedIntervalNode<Type> node = find(root, interval);
+        if (node == null)
+            return false;
+        root = remove(root, node.start, node.end, node.id);
+        node.detach();
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove one occurrence of each interval object from the tree
+     *
+     * @param intervals the collection of interval object to remove
+     */
+    public void removeIntervals(Collection<Interval<Type>> intervals) {
+        for (Interval<Type> interval : intervals)
+            removeInterval(interval);
+    }
+
+    /**
+     * Remove all intervals from the tree
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * @return an iterator over all intervals ordered by start
+     */
+    public Iterator<Interval<Type>> iterator() {
+        return new InOrderIterator();
+    }
+
+    /**
+     * A balanced tree is always in sync, kept for compatibility with {@link IntervalTree}
+     *
+     * @return true
+     */
+    public boolean inSync() {
+        return true;
+    }
+
+    /**
+     * A balanced tree is always in sync, kept for compatibility with {@link IntervalTree}
+     */
+    public void build() {
+    }
+
+    /**
+     * @return the number of entries in the tree
+     */
+    public int currentSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of entries in the tree, kept for compatibility with {@link IntervalTree}
+     */
+    public int listSize() {
+        return size;
+    }
+
+    /**
+     * @return the height of the tree, 0 when empty
+     */
+    public int height() {
+        return BalancedIntervalNode.height(root);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        nodeString(root, 0, sb);
+        return sb.toString();
+    }
+
+    private void nodeString(BalancedIntervalNode<Type> node, int level, StringBuilder sb) {
+        if (node == null)
+            return;
+
+        for (int i = 0; i < level; i++)
+            sb.append("\t");
+        sb.append(node).append("\n");
+        nodeString(node.left, level + 1, sb);
+        nodeString(node.right, level + 1, sb);
+    }
+
+    private void stab(BalancedIntervalNode<Type> node, long time, Consumer<? super Interval<Type>> consumer) {
+        while (node != null && node.maxEnd > time) {
+            stab(node.left, time, consumer);
+            if (node.start > time)
+                return;
+            if (node.end > time)
+                consumer.accept(node.interval);
+            node = node.right;
+        }
+    }
+
+    private void query(BalancedIntervalNode<Type> node, long start, long end, Consumer<? super Interval<Type>> consumer) {
+        while (node != null && node.maxEnd > start) {
+            query(node.left, start, end, consumer);
+            if (node.start >= end)
+                return;
+            if (node.end > start)
+                consumer.accept(node.interval);
+            node = node.right;
+        }
+    }
+
+    private BalancedIntervalNode<Type> find(BalancedIntervalNode<Type> node, Interval<Type> interval) {
+        long start = interval.getStart();
+        long end = interval.getEnd();
+        while (node != null) {
+            if (start < node.start || (start == node.start && end < node.end)) {
+                node = node.left;
+            } else if (start > node.start || end > node.end) {
+                node = node.right;
+            } else {
+                // same start and end, equal intervals may sit on either side
+                if (node.interval.equals(interval))
+                    return node;
+                BalancedIntervalNode<Type> found = find(node.left, interval);
+                if (found != null)
+                    return found;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the node behind handle if it is still part of this tree, otherwise null
+     */
+    @SuppressWarnings("unchecked")
+    private BalancedIntervalNode<Type> locate(IntervalHandle<Type> handle) {
+        if (!(handle instanceof BalancedIntervalNode))
+            return null;
+        BalancedIntervalNode<Type> target = (BalancedIntervalNode<Type>) handle;
+
+        BalancedIntervalNode<Type> node = root;
+        while (node != null) {
+            int cmp = node.compareKey(target.start, target.end, target.id);
+            if (cmp == 0)
+                return node == target ? node : null;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private BalancedIntervalNode<Type> insert(BalancedIntervalNode<Type> node, BalancedIntervalNode<Type> added) {
+        if (node == null)
+            return added;
+
+        if (node.compareKey(added.start, added.end, added.id) < 0)
+            node.left = insert(node.left, added);
+        else
+            node.right = insert(node.right, added);
+        return rebalance(node);
+    }
+
+    /**
+     * Remove the node with the given key, relinking nodes rather than copying keys
+     * so that every remaining node keeps its identity
+     */
+    private BalancedIntervalNode<Type> remove(BalancedIntervalNode<Type> node, long start, long end, long id) {
+        if (node == null)
+            return null;
+
+        int cmp = node.compareKey(start, end, id);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, end, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, end, id);
+        } else {
+            if (node.left == null)
+                return node.right;
+            if (node.right == null)
+                return node.left;
+
+            BalancedIntervalNode<Type> successor = node.right;
+            while (successor.left != null)
+                successor = successor.left;
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return rebalance(node);
+    }
+
+    private BalancedIntervalNode<Type> removeMin(BalancedIntervalNode<Type> node) {
+        if (node.left == null)
+            return node.right;
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    private BalancedIntervalNode<Type> rebalance(BalancedIntervalNode<Type> node) {
+        node.update();
+        int balance = node.balance();
+        if (balance > 1) {
+            if (node.left.balance() < 0)
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (node.right.balance() > 0)
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private BalancedIntervalNode<Type> rotateRight(BalancedIntervalNode<Type> node) {
+        BalancedIntervalNode<Type> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private BalancedIntervalNode<Type> rotateLeft(BalancedIntervalNode<Type> node) {
+        BalancedIntervalNode<Type> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private class InOrderIterator implements Iterator<Interval<Type>> {
+
+        private final Deque<BalancedIntervalNode<Type>> stack = new ArrayDeque<BalancedIntervalNode<Type>>();
+
+        InOrderIterator() {
+            pushLeft(root);
+        }
+
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        public Interval<Type> next() {
+            if (stack.isEmpty())
+                throw new NoSuchElementException();
+            BalancedIntervalNode<Type> node = stack.pop();
+            pushLeft(node.right);
+            return node.interval;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void pushLeft(BalancedIntervalNode<Type> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Answers many stabbing or interval queries with one coordinated traversal of an interval tree
+ *
+ * The queries are sorted once, then every node is visited at most once for the whole
+ * batch with the slice of queries that reach it; for stabbing queries that slice is a
+ * contiguous run of the sorted times, split at the node center. With a pool, subtrees
+ * holding more than {@link #PARALLEL_THRESHOLD} queries are traversed as separate
+ * fork-join tasks
+ *
+ * @param <Type> the type of objects associated
+ */
+final class BatchQuery<Type> {
+
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    private final List<List<Interval<Type>>> results;
+    private final List<CollectingConsumer<Interval<Type>>> collectors;
+
+    private BatchQuery(int count) {
+        results = new ArrayList<List<Interval<Type>>>(count);
+        collectors = new ArrayList<CollectingConsumer<Interval<Type>>>(count);
+        for (int i = 0; i < count; i++) {
+            List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+            results.add(result);
+            collectors.add(new CollectingConsumer<Interval<Type>>(result));
+        }
+    }
+
+    /**
+     * @param head  the head of a built tree
+     * @param times the times to stab
+     * @param pool  the pool to traverse in, or null to run in the calling thread
+     * @return the intervals containing times[i] at index i
+     */
+    static <Type> List<List<Interval<Type>>> stab(IntervalNode<Type> head, long[] times, ForkJoinPool pool) {
+        BatchQuery<Type> batch = new BatchQuery<Type>(times.length);
+        int[] order = sortedOrder(times);
+        long[] sorted = new long[times.length];
+        for (int i = 0; i < order.length; i++)
+            sorted[i] = times[order[i]];
+
+        BatchQuery<Type>.StabTask task = batch.new StabTask(head, sorted, order, 0, times.length, pool != null);
+        if (pool != null)
+            pool.invoke(task);
+        else
+            task.invoke();
+        return batch.results;
+    }
+
+    /**
+     * @param head   the head of a built tree
+     * @param starts the starts of the intervals to check
+     * @param ends   the ends of the intervals to check, parallel to starts
+     * @param pool   the pool to traverse in, or null to run in the calling thread
+     * @return the intervals intersecting [starts[i], ends[i]) at index i
+     */
+    static <Type> List<List<Interval<Type>>> query(IntervalNode<Type> head, long[] starts, long[] ends, ForkJoinPool pool) {
+        if (starts.length != ends.length)
+            throw new IllegalArgumentException("Got " + starts.length + " starts but " + ends.length + " ends");
+
+        BatchQuery<Type> batch = new BatchQuery<Type>(starts.length);
+        int[] order = sortedOrder(starts);
+        @SuppressWarnings("unchecked")
+        Consumer<? super Interval<Type>>[] sinks = new Consumer[starts.length];
+        for (int i = 0; i < order.length; i++)
+            sinks[i] = batch.collectors.get(order[i]);
+        BatchQuery<Type>.QueryTask task = batch.new QueryTask(head, starts, ends, order, sinks, starts.length, pool != null);
+        if (pool != null)
+            pool.invoke(task);
+        else
+            task.invoke();
+        return batch.results;
+    }
+
+    /**
+     * Handles the queries sorted[from, to), whose original indices are order[from, to), under node
+     */
+    private class StabTask extends RecursiveAction {
+
+        private final IntervalNode<Type> node;
+        private final long[] sorted;
+        private final int[] order;
+        private final int from;
+        private final int to;
+        private final boolean parallel;
+
+        StabTask(IntervalNode<Type> node, long[] sorted, int[] order, int from, int to, boolean parallel) {
+            this.node = node;
+            this.sorted = sorted;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            long center = node.getCenter();
+            int below = EndpointIndex.lowerBound(sorted, from, to, center);
+            int above = EndpointIndex.upperBound(sorted, below, to, center);
+
+            // consecutive queries scan the same node arrays, which stay in cache across the slice
+            Interval<Type>[] startOrdered = node.getStartOrdered();
+            for (int i = from; i < below; i++) {
+                long time = sorted[i];
+                List<Interval<Type>> result = results.get(order[i]);
+                for (Interval<Type> interval : startOrdered) {
+                    if (interval.getStart() > time)
+                        break;
+                    if (interval.getEnd() > time)
+                        result.add(interval);
+                }
+            }
+
+            Interval<Type>[] endOrdered = node.getEndOrdered();
+            for (int i = below; i < to; i++) {
+                long time = sorted[i];
+                List<Interval<Type>> result = results.get(order[i]);
+                for (Interval<Type> interval : endOrdered) {
+                    if (interval.getEnd() <= time)
+                        break;
+                    if (interval.getStart() <= time)
+                        result.add(interval);
+                }
+            }
+
+            StabTask left = below > from && node.getLeft() != null
+                    ? new StabTask(node.getLeft(), sorted, order, from, below, parallel) : null;
+            StabTask right = to > above && node.getRight() != null
+                    ? new StabTask(node.getRight(), sorted, order, above, to, parallel) : null;
+            runChildren(left, right, parallel && to - from > PARALLEL_THRESHOLD);
+        }
+    }
+
+    /**
+     * Handles the queries at indices[0, count), sorted by start, under node, passing what
+     * query indices[i] finds to sinks[i]
+     */
+    private class QueryTask extends RecursiveAction {
+
+        private final IntervalNode<Type> node;
+        private final long[] starts;
+        private final long[] ends;
+        private final int[] indices;
+        private final Consumer<? super Interval<Type>>[] sinks;
+        private final int count;
+        private final boolean parallel;
+
+        QueryTask(IntervalNode<Type> node, long[] starts, long[] ends, int[] indices,
+                  Consumer<? super Interval<Type>>[] sinks, int count, boolean parallel) {
+            this.node = node;
+            this.starts = starts;
+            this.ends = ends;
+            this.indices = indices;
+            this.sinks = sinks;
+            this.count = count;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            long center = node.getCenter();
+            int leftCount = 0;
+            int rightCount = 0;
+            for (int i = 0; i < count; i++) {
+                int query = indices[i];
+                node.scanIntersecting(starts[query], ends[query], sinks[i]);
+                if (starts[query] < center)
+                    leftCount++;
+                if (ends[query] > center)
+                    rightCount++;
+            }
+
+            boolean hasLeft = leftCount > 0 && node.getLeft() != null;
+            boolean hasRight = rightCount > 0 && node.getRight() != null;
+            if (!parallel || count <= PARALLEL_THRESHOLD || !hasLeft || !hasRight) {
+                if (hasLeft)
+                    child(node.getLeft(), center, true, leftCount, null).invoke();
+                if (hasRight)
+                    child(node.getRight(), center, false, rightCount, null).invoke();
+                return;
+            }
+
+            // queries spanning the center reach both children, so the right one collects
+            // those into lists of its own, appended to the shared sinks once both are done
+            List<List<Interval<Type>>> spanning = new ArrayList<List<Interval<Type>>>();
+            QueryTask left = child(node.getLeft(), center, true, leftCount, null);
+            QueryTask right = child(node.getRight(), center, false, rightCount, spanning);
+            invokeAll(left, right);
+            int k = 0;
+            for (int i = 0; i < count; i++) {
+                int query = indices[i];
+                if (starts[query] < center && ends[query] > center) {
+                    for (Interval<Type> interval : spanning.get(k++))
+                        sinks[i].accept(interval);
+                }
+            }
+        }
+
+        /**
+         * @param spanning if not null, receives in order a private list for each selected
+         *                 query spanning center, which the child fills in place of its sink
+         */
+        @SuppressWarnings("unchecked")
+        private QueryTask child(IntervalNode<Type> child, long center, boolean left, int selected,
+                                List<List<Interval<Type>>> spanning) {
+            int[] subset = new int[selected];
+            Consumer<? super Interval<Type>>[] subsetSinks = new Consumer[selected];
+            int j = 0;
+            for (int i = 0; i < count; i++) {
+                int query = indices[i];
+                if (left ? starts[query] >= center : ends[query] <= center)
+                    continue;
+                subset[j] = query;
+                if (spanning != null && starts[query] < center) {
+                    List<Interval<Type>> own = new ArrayList<Interval<Type>>();
+                    spanning.add(own);
+                    subsetSinks[j] = new CollectingConsumer<Interval<Type>>(own);
+                } else {
+                    subsetSinks[j] = sinks[i];
+                }
+                j++;
+            }
+            return new QueryTask(child, starts, ends, subset, subsetSinks, selected, parallel);
+        }
+    }
+
+    private static void runChildren(RecursiveAction left, RecursiveAction right, boolean parallel) {
+        if (parallel && left != null && right != null) {
+            RecursiveAction.invokeAll(left, right);
+            return;
+        }
+        if (left != null)
+            left.invoke();
+        if (right != null)
+            right.invoke();
+    }
+
+    /**
+     * @return the indices of keys ordered by key, stable, or the identity if keys are already sorted
+     */
+    static int[] sortedOrder(long[] keys) {
+        int[] order = new int[keys.length];
+        boolean sorted = true;
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = i;
+            if (i > 0 && keys[i - 1] > keys[i])
+                sorted = false;
+        }
+        if (!sorted)
+            mergeSort(keys, order, new int[keys.length], 0, keys.length);
+        return order;
+    }
+
+    private static void mergeSort(long[] keys, int[] order, int[] scratch, int from, int to) {
+        if (to - from < 2)
+            return;
+        int middle = (from + to) >>> 1;
+        mergeSort(keys, order, scratch, from, middle);
+        mergeSort(keys, order, scratch, middle, to);
+        if (keys[order[middle - 1]] <= keys[order[middle]])
+            return;
+
+        System.arraycopy(order, from, scratch, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < middle && keys[scratch[i]] <= keys[scratch[j]]))
+                order[k] = scratch[i++];
+            else
+                order[k] = scratch[j++];
+        }
+    }
+}
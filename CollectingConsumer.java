@@ -0,0 +1,23 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Adapts a collection to a consumer, used to back the list returning queries
+ * with the consumer based traversals
+ *
+ * @param <T> the type of element collected
+ */
+class CollectingConsumer<T> implements Consumer<T> {
+
+    private final Collection<? super T> target;
+
+    CollectingConsumer(Collection<? super T> target) {
+        this.target = target;
+    }
+
+    public void accept(T element) {
+        target.add(element);
+    }
+}
@@ -0,0 +1,279 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread-safe interval tree where readers never block and never rebuild
+ *
+ * Writers stage their changes on a master list; a background task rebuilds a
+ * {@link FrozenIntervalTree} from it and publishes the new version with a single
+ * volatile write. Queries always run against the latest published version, which lags
+ * the staged changes by at most the configured staleness plus the time of one rebuild.
+ * Several changes made within the staleness window are published by one rebuild
+ *
+ * @param <Type> the type of objects to associate
+ */
+public class ConcurrentIntervalTree<Type> implements Closeable {
+
+    private final Object writeLock = new Object();
+    private final Object publishLock = new Object();
+
+    // guarded by writeLock
+    private final List<Interval<Type>> intervalList;
+    private long version;
+    private boolean publishScheduled;
+    private boolean closed;
+
+    // written under publishLock
+    private volatile long publishedVersion;
+
+    private volatile FrozenIntervalTree<Type> published;
+
+    private final long maxStalenessMillis;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final Runnable publishTask = new Runnable() {
+        public void run() {
+            publish();
+        }
+    };
+
+    /**
+     * Instantiate a new tree with no intervals, rebuilt on its own daemon thread
+     *
+     * @param maxStalenessMillis how long a change may wait before it is published
+     */
+    public ConcurrentIntervalTree(long maxStalenessMillis) {
+        this(maxStalenessMillis, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "interval-tree-publisher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    /**
+     * Instantiate a new tree with no intervals, rebuilt on the given executor
+     *
+     * @param maxStalenessMillis how long a change may wait before it is published
+     * @param executor           runs the rebuilds, not shut down by {@link #close()}
+     */
+    public ConcurrentIntervalTree(long maxStalenessMillis, ScheduledExecutorService executor) {
+        this(maxStalenessMillis, executor, false);
+    }
+
+    private ConcurrentIntervalTree(long maxStalenessMillis, ScheduledExecutorService executor, boolean ownsExecutor) {
+        if (maxStalenessMillis < 0)
+            throw new IllegalArgumentException("Negative staleness: " + maxStalenessMillis);
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.intervalList = new ArrayList<Interval<Type>>();
+        this.published = FrozenIntervalTree.of(new ArrayList<Interval<Type>>());
+    }
+
+    /**
+     * Perform a stabbing query on the latest published version
+     *
+     * @param time the time to stab
+     * @return the data associated with all intervals that contain time
+     */
+    public List<Type> get(long time) {
+        return published.get(time);
+    }
+
+    /**
+     * Perform an interval query on the latest published version
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals that intersect target
+     */
+    public List<Type> get(long start, long end) {
+        return published.get(start, end);
+    }
+
+    /**
+     * Perform a stabbing query on the latest published version without allocating
+     *
+     * @param time    the time to stab
+     * @param visitor receives each interval that contains time
+     */
+    public void forEachContaining(long time, IntervalVisitor<? super Type> visitor) {
+        published.forEachContaining(time, visitor);
+    }
+
+    /**
+     * Perform an interval query on the latest published version without allocating
+     *
+     * @param start   the start of the interval to check
+     * @param end     the end of the interval to check
+     * @param visitor receives each interval that intersects target
+     */
+    public void forEachIntersecting(long start, long end, IntervalVisitor<? super Type> visitor) {
+        published.forEachIntersecting(start, end, visitor);
+    }
+
+    /**
+     * @return the latest published version, which stays valid and unchanged for as long as it is held
+     */
+    public FrozenIntervalTree<Type> snapshot() {
+        return published;
+    }
+
+    /**
+     * Stage an interval to be published by the next rebuild
+     *
+     * @param interval the interval object to add
+     */
+    public void addInterval(Interval<Type> interval) {
+        synchronized (writeLock) {
+            checkOpen();
+            intervalList.add(interval);
+            changed();
+        }
+    }
+
+    /**
+     * Stage an interval to be published by the next rebuild
+     *
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data to associate
+     */
+    public void addInterval(long begin, long end, Type data) {
+        addInterval(new Interval<Type>(begin, end, data));
+    }
+
+    /**
+     * Stage several intervals to be published together by the next rebuild
+     *
+     * @param intervals the interval objects to add
+     */
+    public void addIntervals(Collection<Interval<Type>> intervals) {
+        synchronized (writeLock) {
+            checkOpen();
+            intervalList.addAll(intervals);
+            changed();
+        }
+    }
+
+    /**
+     * Stage the removal of an interval, published by the next rebuild
+     *
+     * @param interval the interval object to remove
+     */
+    public void removeInterval(Interval<Type> interval) {
+        synchronized (writeLock) {
+            checkOpen();
+            if (intervalList.remove(interval))
+                changed();
+        }
+    }
+
+    /**
+     * Stage the removal of one occurrence of each of several intervals, published together
+     * by the next rebuild
+     *
+     * @param intervals the interval objects to remove
+     */
+    public void removeIntervals(Collection<Interval<Type>> intervals) {
+        synchronized (writeLock) {
+            checkOpen();
+            boolean removed = false;
+            for (Interval<Type> interval : intervals)
+                removed |= intervalList.remove(interval);
+            if (removed)
+                changed();
+        }
+    }
+
+    /**
+     * Stage the removal of all intervals, published by the next rebuild
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            checkOpen();
+            intervalList.clear();
+            changed();
+        }
+    }
+
+    /**
+     * Rebuild and publish all staged changes now, blocking until they are visible to readers
+     */
+    public void publish() {
+        synchronized (publishLock) {
+            List<Interval<Type>> intervals;
+            long building;
+            synchronized (writeLock) {
+                publishScheduled = false;
+                if (version == publishedVersion)
+                    return;
+                intervals = new ArrayList<Interval<Type>>(intervalList);
+                building = version;
+            }
+
+            published = FrozenIntervalTree.of(intervals);
+            publishedVersion = building;
+        }
+    }
+
+    /**
+     * @return true if every staged change has been published
+     */
+    public boolean inSync() {
+        synchronized (writeLock) {
+            return version == publishedVersion;
+        }
+    }
+
+    /**
+     * @return the number of staged intervals, which the published version reaches once in sync
+     */
+    public int listSize() {
+        synchronized (writeLock) {
+            return intervalList.size();
+        }
+    }
+
+    /**
+     * @return the number of intervals in the latest published version
+     */
+    public int currentSize() {
+        return published.size();
+    }
+
+    /**
+     * Stop scheduling rebuilds, shutting the publisher thread down if this tree created it
+     * The published version stays queryable, further changes are rejected
+     */
+    public void close() {
+        synchronized (writeLock) {
+            closed = true;
+        }
+        if (ownsExecutor)
+            executor.shutdownNow();
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Interval tree is closed");
+    }
+
+    private void changed() {
+        version++;
+        if (!publishScheduled) {
+            // a rejected schedule leaves the flag clear, so the next change tries again
+            executor.schedule(publishTask, maxStalenessMillis, TimeUnit.MILLISECONDS);
+            publishScheduled = true;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.function.Consumer;
+
+/**
+ * Passes elements on to another consumer while counting them, used to report
+ * result sizes of instrumented queries
+ *
+ * @param <T> the type of element counted
+ */
+class CountingConsumer<T> implements Consumer<T> {
+
+    private final Consumer<? super T> target;
+    private int count;
+
+    CountingConsumer(Consumer<? super T> target) {
+        this.target = target;
+    }
+
+    public void accept(T element) {
+        count++;
+        target.accept(element);
+    }
+
+    int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,105 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The union of all intervals of a built tree as disjoint segments, with the running
+ * total of their lengths, so that the covered length of any window is two binary searches
+ * and its union or gaps cost only the segments inside it
+ *
+ * Intervals that overlap or touch are merged, empty ones cover nothing
+ */
+final class CoverageIndex {
+
+    private final long[] starts;
+    private final long[] ends;
+    // covered[i] is the total length of the segments before i
+    private final long[] covered;
+
+    /**
+     * @param byStart the intervals ordered by ascending start
+     */
+    CoverageIndex(Interval<?>[] byStart) {
+        long[] segmentStarts = new long[byStart.length];
+        long[] segmentEnds = new long[byStart.length];
+        int count = 0;
+        for (Interval<?> interval : byStart) {
+            if (interval.getEnd() <= interval.getStart())
+                continue;
+            if (count > 0 && interval.getStart() <= segmentEnds[count - 1]) {
+                if (interval.getEnd() > segmentEnds[count - 1])
+                    segmentEnds[count - 1] = interval.getEnd();
+            } else {
+                segmentStarts[count] = interval.getStart();
+                segmentEnds[count] = interval.getEnd();
+                count++;
+            }
+        }
+        starts = Arrays.copyOf(segmentStarts, count);
+        ends = Arrays.copyOf(segmentEnds, count);
+        covered = new long[count + 1];
+        for (int i = 0; i < count; i++)
+            covered[i + 1] = covered[i] + (ends[i] - starts[i]);
+    }
+
+    /**
+     * @return the length of [start, end) covered by at least one interval
+     */
+    long coveredLength(long start, long end) {
+        if (end <= start)
+            return 0;
+        int first = firstEndingAfter(start);
+        int last = firstStartingAtOrAfter(end);
+        if (first >= last)
+            return 0;
+        // the whole segments in between, less what the first and last stick out of the window
+        long length = covered[last] - covered[first];
+        if (starts[first] < start)
+            length -= start - starts[first];
+        if (ends[last - 1] > end)
+            length -= ends[last - 1] - end;
+        return length;
+    }
+
+    /**
+     * @return the covered parts of [start, end) as disjoint intervals by ascending start, without data
+     */
+    <Type> List<Interval<Type>> union(long start, long end) {
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        if (end <= start)
+            return result;
+        int last = firstStartingAtOrAfter(end);
+        for (int i = firstEndingAfter(start); i < last; i++)
+            result.add(new Interval<Type>(Math.max(starts[i], start), Math.min(ends[i], end), null));
+        return result;
+    }
+
+    /**
+     * @return the parts of [start, end) not covered by any interval, by ascending start, without data
+     */
+    <Type> List<Interval<Type>> gaps(long start, long end) {
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        if (end <= start)
+            return result;
+        long idleFrom = start;
+        int last = firstStartingAtOrAfter(end);
+        for (int i = firstEndingAfter(start); i < last; i++) {
+            if (starts[i] > idleFrom)
+                result.add(new Interval<Type>(idleFrom, starts[i], null));
+            idleFrom = ends[i];
+        }
+        if (idleFrom < end)
+            result.add(new Interval<Type>(idleFrom, end, null));
+        return result;
+    }
+
+    private int firstEndingAfter(long time) {
+        return EndpointIndex.upperBound(ends, 0, ends.length, time);
+    }
+
+    private int firstStartingAtOrAfter(long time) {
+        return EndpointIndex.lowerBound(starts, 0, starts.length, time);
+    }
+}
@@ -0,0 +1,23 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Collects the data of every interval passed to it, so data queries
+ * do not have to copy an intermediate interval list
+ *
+ * @param <Type> the type of data being collected
+ */
+class DataCollectingConsumer<Type> implements Consumer<Interval<Type>> {
+
+    private final Collection<? super Type> target;
+
+    DataCollectingConsumer(Collection<? super Type> target) {
+        this.target = target;
+    }
+
+    public void accept(Interval<Type> interval) {
+        target.add(interval.getData());
+    }
+}
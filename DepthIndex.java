@@ -0,0 +1,120 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The overlap depth of a built tree as a step function, with a max segment tree over
+ * the steps, so that the peak of any window takes two binary searches and one range
+ * maximum, and its profile costs only the steps inside it
+ *
+ * Step i holds depths[i] from times[i] until the next step, depth is zero before the first.
+ * Consecutive steps always differ in depth. Empty intervals contain nothing and are left out
+ */
+final class DepthIndex {
+
+    private final long[] times;
+    private final int[] depths;
+    // node i covers the steps of nodes 2i and 2i + 1, leaves at steps + i, holding the step with the greatest depth
+    private final int[] peaks;
+
+    DepthIndex(Collection<? extends Interval<?>> intervals) {
+        long[] starts = new long[intervals.size()];
+        long[] ends = new long[intervals.size()];
+        int count = 0;
+        for (Interval<?> interval : intervals) {
+            if (interval.getEnd() <= interval.getStart())
+                continue;
+            starts[count] = interval.getStart();
+            ends[count] = interval.getEnd();
+            count++;
+        }
+        Arrays.sort(starts, 0, count);
+        Arrays.sort(ends, 0, count);
+
+        long[] stepTimes = new long[2 * count];
+        int[] stepDepths = new int[2 * count];
+        int steps = 0;
+        int depth = 0;
+        int i = 0;
+        int j = 0;
+        while (j < count) {
+            // apply every start and end at the next time together, so only the net change makes a step
+            long time = i < count && starts[i] < ends[j] ? starts[i] : ends[j];
+            while (i < count && starts[i] == time) {
+                depth++;
+                i++;
+            }
+            while (j < count && ends[j] == time) {
+                depth--;
+                j++;
+            }
+            int previous = steps > 0 ? stepDepths[steps - 1] : 0;
+            if (depth != previous) {
+                stepTimes[steps] = time;
+                stepDepths[steps] = depth;
+                steps++;
+            }
+        }
+        times = Arrays.copyOf(stepTimes, steps);
+        depths = Arrays.copyOf(stepDepths, steps);
+
+        peaks = new int[2 * steps];
+        for (int k = 0; k < steps; k++)
+            peaks[steps + k] = k;
+        for (int k = steps - 1; k > 0; k--)
+            peaks[k] = higher(peaks[2 * k], peaks[2 * k + 1]);
+    }
+
+    /**
+     * @return the greatest depth within [start, end) and the earliest time it is reached,
+     * the depth at start alone for an empty window
+     */
+    DepthPoint maxDepth(long start, long end) {
+        int first = EndpointIndex.upperBound(times, 0, times.length, start);
+        int last = end > start ? EndpointIndex.lowerBound(times, first, times.length, end) : first;
+        int depth = first > 0 ? depths[first - 1] : 0;
+        if (first < last) {
+            int peak = rangePeak(first, last);
+            if (depths[peak] > depth)
+                return new DepthPoint(times[peak], depths[peak]);
+        }
+        return new DepthPoint(start, depth);
+    }
+
+    /**
+     * @return the depth at start followed by every change of depth within (start, end)
+     */
+    List<DepthPoint> profile(long start, long end) {
+        int first = EndpointIndex.upperBound(times, 0, times.length, start);
+        int last = end > start ? EndpointIndex.lowerBound(times, first, times.length, end) : first;
+        List<DepthPoint> result = new ArrayList<DepthPoint>(last - first + 1);
+        result.add(new DepthPoint(start, first > 0 ? depths[first - 1] : 0));
+        for (int i = first; i < last; i++)
+            result.add(new DepthPoint(times[i], depths[i]));
+        return result;
+    }
+
+    /**
+     * @return the earliest of the deepest steps in [from, to), which must not be empty
+     */
+    private int rangePeak(int from, int to) {
+        int steps = depths.length;
+        int peak = from;
+        for (int low = from + steps, high = to + steps; low < high; low >>>= 1, high >>>= 1) {
+            if ((low & 1) == 1)
+                peak = higher(peak, peaks[low++]);
+            if ((high & 1) == 1)
+                peak = higher(peak, peaks[--high]);
+        }
+        return peak;
+    }
+
+    private int higher(int step1, int step2) {
+        if (depths[step1] != depths[step2])
+            return depths[step1] > depths[step2] ? step1 : step2;
+        return Math.min(step1, step2);
+    }
+}
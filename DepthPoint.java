@@ -0,0 +1,51 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.Serializable;
+
+/**
+ * The number of intervals containing a point in time, such as the peak of a window
+ * or one step of a depth profile
+ */
+public final class DepthPoint implements Serializable {
+
+    private final long time;
+    private final int depth;
+
+    DepthPoint(long time, int depth) {
+        this.time = time;
+        this.depth = depth;
+    }
+
+    /**
+     * @return the time at which the depth is reached
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the number of intervals containing the time, counting duplicates
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DepthPoint point = (DepthPoint) o;
+        return time == point.time && depth == point.depth;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (time ^ (time >>> 32)) + depth;
+    }
+
+    @Override
+    public String toString() {
+        return depth + "@" + time;
+    }
+}
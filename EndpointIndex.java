@@ -0,0 +1,73 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Sorted copies of all interval starts and ends of a built tree, one entry per
+ * interval occurrence, so that counting queries reduce to binary searches
+ *
+ * Assumes every interval has start &lt;= end, as the tree itself does
+ */
+final class EndpointIndex {
+
+    private final long[] starts;
+    private final long[] ends;
+
+    EndpointIndex(Collection<? extends Interval<?>> intervals) {
+        starts = new long[intervals.size()];
+        ends = new long[intervals.size()];
+        int i = 0;
+        for (Interval<?> interval : intervals) {
+            starts[i] = interval.getStart();
+            ends[i] = interval.getEnd();
+            i++;
+        }
+        Arrays.sort(starts);
+        Arrays.sort(ends);
+    }
+
+    /**
+     * @return the number of intervals containing time
+     */
+    int countContaining(long time) {
+        // every interval that has ended by time has also started by then
+        return upperBound(starts, 0, starts.length, time) - upperBound(ends, 0, ends.length, time);
+    }
+
+    /**
+     * @return the number of intervals intersecting [start, end), which must not be empty
+     */
+    int countIntersecting(long start, long end) {
+        // every interval that ends by start also starts before end
+        return lowerBound(starts, 0, starts.length, end) - upperBound(ends, 0, ends.length, start);
+    }
+
+    /**
+     * @return the first index in [from, to) whose value is at least key, or to
+     */
+    static int lowerBound(long[] values, int from, int to, long key) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] < key)
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+
+    /**
+     * @return the first index in [from, to) whose value is greater than key, or to
+     */
+    static int upperBound(long[] values, int from, int to, long key) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] <= key)
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,295 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * An immutable snapshot of a built {@link IntervalTree}, laid out as flat primitive arrays
+ *
+ * Nodes are stored in pre-order as parallel center/child arrays, and the intervals of
+ * node i occupy [nodeOffset[i], nodeOffset[i + 1]) of the start, end and data arrays,
+ * ordered by ascending start. endOrder holds the same slots permuted by descending end.
+ * Queries have the same semantics as the tree the snapshot was taken from, without
+ * any per-interval objects
+ *
+ * @param <Type> the type of objects associated
+ */
+public class FrozenIntervalTree<Type> implements Serializable {
+
+    private final long[] centers;
+    private final int[] leftChild;
+    private final int[] rightChild;
+    private final int[] nodeOffset;
+
+    private final long[] starts;
+    private final long[] ends;
+    private final Object[] data;
+    private final int[] endOrder;
+
+    /**
+     * Lay out the nodes under head, which must not be modified while this runs
+     *
+     * @param head the head of a built interval tree
+     */
+    FrozenIntervalTree(IntervalNode<Type> head) {
+        int nodeCount = 0;
+        int intervalCount = 0;
+        Deque<IntervalNode<Type>> pending = new ArrayDeque<IntervalNode<Type>>();
+        if (head != null)
+            pending.push(head);
+        while (!pending.isEmpty()) {
+            IntervalNode<Type> node = pending.pop();
+            nodeCount++;
+            intervalCount += node.getStartOrdered().length;
+            if (node.getRight() != null)
+                pending.push(node.getRight());
+            if (node.getLeft() != null)
+                pending.push(node.getLeft());
+        }
+
+        centers = new long[nodeCount];
+        leftChild = new int[nodeCount];
+        rightChild = new int[nodeCount];
+        nodeOffset = new int[nodeCount + 1];
+        starts = new long[intervalCount];
+        ends = new long[intervalCount];
+        data = new Object[intervalCount];
+        endOrder = new int[intervalCount];
+
+        if (head != null)
+            layout(head, 0, 0);
+    }
+
+    /**
+     * Snapshot a list of intervals without keeping an {@link IntervalTree} around
+     *
+     * @param intervalList the intervals to freeze
+     * @param <Type>       the type of objects associated
+     * @return the frozen tree
+     */
+    public static <Type> FrozenIntervalTree<Type> of(List<Interval<Type>> intervalList) {
+        return new FrozenIntervalTree<Type>(IntervalNodeBuilder.build(intervalList));
+    }
+
+    /**
+     * Write node and its subtree in pre-order
+     *
+     * @return the next free node index and interval slot, packed as [node, slot]
+     */
+    private long layout(IntervalNode<Type> node, int index, int slot) {
+        centers[index] = node.getCenter();
+        nodeOffset[index] = slot;
+
+        Interval<Type>[] byStart = node.getStartOrdered();
+        for (int i = 0; i < byStart.length; i++) {
+            starts[slot + i] = byStart[i].getStart();
+            ends[slot + i] = byStart[i].getEnd();
+            data[slot + i] = byStart[i].getData();
+        }
+        sortByEnd(slot, byStart.length);
+
+        int nextIndex = index + 1;
+        int nextSlot = slot + byStart.length;
+        nodeOffset[nextIndex] = nextSlot;
+
+        leftChild[index] = -1;
+        if (node.getLeft() != null) {
+            leftChild[index] = nextIndex;
+            long next = layout(node.getLeft(), nextIndex, nextSlot);
+            nextIndex = (int) (next >>> 32);
+            nextSlot = (int) next;
+        }
+
+        rightChild[index] = -1;
+        if (node.getRight() != null) {
+            rightChild[index] = nextIndex;
+            long next = layout(node.getRight(), nextIndex, nextSlot);
+            nextIndex = (int) (next >>> 32);
+            nextSlot = (int) next;
+        }
+        return ((long) nextIndex << 32) | nextSlot;
+    }
+
+    private void sortByEnd(int from, int length) {
+        Integer[] order = new Integer[length];
+        for (int i = 0; i < length; i++)
+            order[i] = from + i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer slot1, Integer slot2) {
+                if (ends[slot1] != ends[slot2])
+                    return ends[slot1] < ends[slot2] ? 1 : -1;
+                if (starts[slot1] != starts[slot2])
+                    return starts[slot1] < starts[slot2] ? 1 : -1;
+                return 0;
+            }
+        });
+        for (int i = 0; i < length; i++)
+            endOrder[from + i] = order[i];
+    }
+
+    /**
+     * Perform a stabbing query, returning the associated data
+     *
+     * @param time the time to stab
+     * @return the data associated with all intervals that contain time
+     */
+    public List<Type> get(long time) {
+        List<Type> result = new ArrayList<Type>();
+        forEachContaining(time, new DataCollector<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query, returning the associated data
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals that intersect target
+     */
+    public List<Type> get(long start, long end) {
+        List<Type> result = new ArrayList<Type>();
+        forEachIntersecting(start, end, new DataCollector<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query, returning the associated data
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals that intersect target
+     */
+    public List<Type> get(Date start, Date end) {
+        return get(start.getTime(), end.getTime());
+    }
+
+    /**
+     * Perform a stabbing query without allocating
+     *
+     * @param time    the time to stab
+     * @param visitor receives each interval that contains time
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachContaining(long time, IntervalVisitor<? super Type> visitor) {
+        int node = centers.length > 0 ? 0 : -1;
+        while (node >= 0) {
+            int from = nodeOffset[node];
+            int to = nodeOffset[node + 1];
+            if (time < centers[node]) {
+                for (int i = from; i < to && starts[i] <= time; i++) {
+                    if (ends[i] > time)
+                        visitor.visit(starts[i], ends[i], (Type) data[i]);
+                }
+                node = leftChild[node];
+            } else {
+                for (int j = from; j < to; j++) {
+                    int i = endOrder[j];
+                    if (ends[i] <= time)
+                        break;
+                    if (starts[i] <= time)
+                        visitor.visit(starts[i], ends[i], (Type) data[i]);
+                }
+                node = time > centers[node] ? rightChild[node] : -1;
+            }
+        }
+    }
+
+    /**
+     * Perform an interval query without allocating
+     *
+     * @param start   the start of the interval to check
+     * @param end     the end of the interval to check
+     * @param visitor receives each interval that intersects target
+     */
+    public void forEachIntersecting(long start, long end, IntervalVisitor<? super Type> visitor) {
+        if (centers.length > 0)
+            query(0, start, end, visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void query(int node, long start, long end, IntervalVisitor<? super Type> visitor) {
+        int from = nodeOffset[node];
+        int to = nodeOffset[node + 1];
+        long center = centers[node];
+        if (start < center) {
+            for (int i = from; i < to && starts[i] < end; i++) {
+                if (ends[i] > start)
+                    visitor.visit(starts[i], ends[i], (Type) data[i]);
+            }
+        } else {
+            for (int j = from; j < to; j++) {
+                int i = endOrder[j];
+                if (ends[i] <= start)
+                    break;
+                if (starts[i] < end)
+                    visitor.visit(starts[i], ends[i], (Type) data[i]);
+            }
+        }
+
+        if (start < center && leftChild[node] >= 0)
+            query(leftChild[node], start, end, visitor);
+        if (end > center && rightChild[node] >= 0)
+            query(rightChild[node], start, end, visitor);
+    }
+
+    /**
+     * @return the number of intervals in the snapshot, counting duplicates
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * @return the number of nodes in the snapshot
+     */
+    public int nodeCount() {
+        return centers.length;
+    }
+
+    long[] centers() {
+        return centers;
+    }
+
+    int[] leftChildren() {
+        return leftChild;
+    }
+
+    int[] rightChildren() {
+        return rightChild;
+    }
+
+    int[] nodeOffsets() {
+        return nodeOffset;
+    }
+
+    long[] starts() {
+        return starts;
+    }
+
+    long[] ends() {
+        return ends;
+    }
+
+    int[] endOrder() {
+        return endOrder;
+    }
+
+    @SuppressWarnings("unchecked")
+    Type data(int slot) {
+        return (Type) data[slot];
+    }
+
+    static class DataCollector<Type> implements IntervalVisitor<Type> {
+
+        private final List<Type> result;
+
+        DataCollector(List<Type> result) {
+            this.result = result;
+        }
+
+        public void visit(long start, long end, Type data) {
+            result.add(data);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * Describes how to fold intervals into an aggregate value, for use with the
+ * {@link AggregatingIntervalTree}
+ *
+ * combine must be associative and commutative with identity as its neutral element,
+ * as sums, minimums, maximums and counts are; the tree combines partial aggregates in
+ * no particular order
+ *
+ * @param <Type> the type of data associated with the intervals
+ * @param <A>    the type of the aggregate
+ */
+public interface IntervalAggregator<Type, A> {
+
+    /**
+     * @return the aggregate of no intervals
+     */
+    A identity();
+
+    /**
+     * @param interval the interval to take the value of
+     * @return the aggregate of the single interval
+     */
+    A extract(Interval<Type> interval);
+
+    /**
+     * @param left  an aggregate
+     * @param right another aggregate
+     * @return the aggregate of both
+     */
+    A combine(A left, A right);
+}
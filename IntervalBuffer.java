@@ -0,0 +1,72 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A reusable, growable buffer of query results
+ *
+ * Passing the same buffer to repeated queries avoids allocating a result
+ * list per call; it only allocates when it has to grow past its largest
+ * previous result
+ *
+ * @param <Type> the type of data associated with the intervals
+ */
+public class IntervalBuffer<Type> implements Consumer<Interval<Type>> {
+
+    private Interval<Type>[] intervals;
+    private int size;
+
+    public IntervalBuffer() {
+        this(16);
+    }
+
+    /**
+     * @param capacity the initial number of intervals the buffer can hold without growing
+     */
+    @SuppressWarnings("unchecked")
+    public IntervalBuffer(int capacity) {
+        this.intervals = (Interval<Type>[]) new Interval[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    public void accept(Interval<Type> interval) {
+        if (size == intervals.length)
+            intervals = Arrays.copyOf(intervals, size * 2);
+        intervals[size++] = interval;
+    }
+
+    /**
+     * @param index the index of the interval
+     * @return the interval at index
+     */
+    public Interval<Type> get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return intervals[index];
+    }
+
+    /**
+     * @param index the index of the interval
+     * @return the data of the interval at index
+     */
+    public Type getData(int index) {
+        return get(index).getData();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Empty the buffer, keeping its capacity
+     */
+    public void clear() {
+        Arrays.fill(intervals, 0, size, null);
+        size = 0;
+    }
+}
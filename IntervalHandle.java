@@ -0,0 +1,31 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * A stable reference to one interval stored in a {@link BalancedIntervalTree},
+ * returned when it is added, through which it can later be removed or moved
+ * in O(log n) without searching for an equal interval
+ *
+ * @param <Type> the type of data associated with the interval
+ */
+public interface IntervalHandle<Type> {
+
+    /**
+     * @return the start of the interval as currently stored
+     */
+    long getStart();
+
+    /**
+     * @return the end of the interval as currently stored
+     */
+    long getEnd();
+
+    /**
+     * @return the data associated with the interval
+     */
+    Type getData();
+
+    /**
+     * @return the interval object itself, which must only be moved through its tree
+     */
+    Interval<Type> getInterval();
+}
@@ -0,0 +1,15 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * Receives query results from a {@link MappedIntervalTree}, whose payloads are
+ * stored as ids or offsets into a side file rather than as objects
+ */
+public interface IntervalIdVisitor {
+
+    /**
+     * @param start     the start of the matching interval
+     * @param end       the end of the matching interval
+     * @param payloadId the payload id stored for the matching interval
+     */
+    void visit(long start, long end, long payloadId);
+}
@@ -0,0 +1,207 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds every pair of intersecting intervals between two interval sets in one sweep,
+ * in place of querying one tree once per interval of the other
+ *
+ * Both sides are walked by ascending start, merged, with ties taken from the left first.
+ * Each interval, when reached, is paired with the intervals of the other side that start
+ * from there on but before it ends, so every pair is found exactly once, by whichever of
+ * the two starts later, and a scan only ever passes over intervals it reports plus one.
+ * With a pool, the merged order is cut into partitions of equal interval count, each
+ * swept as a separate fork-join task reporting the pairs whose later start falls inside it
+ *
+ * Intervals are half open, as in {@link Interval#intersects}
+ */
+public final class IntervalJoin {
+
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    static final Comparator<Interval<?>> BY_START = new Comparator<Interval<?>>() {
+        @Override
+        public int compare(Interval<?> interval1, Interval<?> interval2) {
+            if (interval1.getStart() != interval2.getStart())
+                return interval1.getStart() < interval2.getStart() ? -1 : 1;
+            return Long.compare(interval1.getEnd(), interval2.getEnd());
+        }
+    };
+
+    private IntervalJoin() {
+    }
+
+    /**
+     * Perform an overlap join of two trees
+     * Will rebuild either tree if out of sync
+     *
+     * @param left    the left side of the join
+     * @param right   the right side of the join
+     * @param visitor receives every pair of intersecting intervals
+     */
+    public static <Left, Right> void join(IntervalTree<Left> left, IntervalTree<Right> right,
+                                          IntervalPairVisitor<Left, Right> visitor) {
+        join(left, right, visitor, null);
+    }
+
+    /**
+     * Perform an overlap join of two trees, splitting large joins across the pool
+     * Will rebuild either tree if out of sync
+     *
+     * @param left    the left side of the join
+     * @param right   the right side of the join
+     * @param visitor receives every pair of intersecting intervals, from several threads at
+     *                once when run in a pool
+     * @param pool    the pool to run in, or null to run in the calling thread
+     */
+    public static <Left, Right> void join(IntervalTree<Left> left, IntervalTree<Right> right,
+                                          IntervalPairVisitor<Left, Right> visitor, ForkJoinPool pool) {
+        Interval<Left>[] lefts = left.startOrdered();
+        Interval<Right>[] rights = right.startOrdered();
+        int total = lefts.length + rights.length;
+        if (pool == null || total <= PARALLEL_THRESHOLD) {
+            sweep(lefts, rights, 0, 0, lefts.length, rights.length, visitor);
+            return;
+        }
+
+        int partitions = Math.min(pool.getParallelism() * PARTITIONS_PER_THREAD, total / (PARALLEL_THRESHOLD / 4));
+        int[] leftSplits = new int[partitions + 1];
+        int[] rightSplits = new int[partitions + 1];
+        for (int p = 1; p <= partitions; p++) {
+            int rank = (int) ((long) total * p / partitions);
+            leftSplits[p] = split(lefts, rights, rank);
+            rightSplits[p] = rank - leftSplits[p];
+        }
+        pool.invoke(new JoinTask<Left, Right>(lefts, rights, leftSplits, rightSplits, 0, partitions, visitor));
+    }
+
+    /**
+     * Perform an overlap join of a tree with a stream of intervals, consuming the stream once
+     * Will rebuild the tree if out of sync
+     *
+     * @param left    the left side of the join
+     * @param right   the right side of the join, ordered by ascending start
+     * @param visitor receives every pair of intersecting intervals
+     * @throws IllegalArgumentException if right turns out not to be ordered by start
+     */
+    public static <Left, Right> void join(IntervalTree<Left> left, Iterable<Interval<Right>> right,
+                                          IntervalPairVisitor<Left, Right> visitor) {
+        Interval<Left>[] lefts = left.startOrdered();
+        // left intervals started by the current right start, some possibly ended by now
+        List<Interval<Left>> active = new ArrayList<Interval<Left>>();
+        int next = 0;
+        long previousStart = Long.MIN_VALUE;
+
+        for (Interval<Right> interval : right) {
+            long start = interval.getStart();
+            long end = interval.getEnd();
+            if (start < previousStart)
+                throw new IllegalArgumentException("Intervals not ordered by start: " + start + " after " + previousStart);
+            previousStart = start;
+
+            while (next < lefts.length && lefts[next].getStart() <= start)
+                active.add(lefts[next++]);
+
+            // right starts never decrease, so a left interval ended by this start stays ended
+            int kept = 0;
+            for (int i = 0; i < active.size(); i++) {
+                Interval<Left> candidate = active.get(i);
+                if (candidate.getEnd() <= start)
+                    continue;
+                active.set(kept++, candidate);
+                if (candidate.getStart() < end)
+                    visitor.visit(candidate, interval);
+            }
+            active.subList(kept, active.size()).clear();
+
+            for (int i = next; i < lefts.length && lefts[i].getStart() < end; i++)
+                visitor.visit(lefts[i], interval);
+        }
+    }
+
+    /**
+     * Sweep the merged order from (leftFrom, rightFrom) to (leftTo, rightTo), scanning the
+     * other side past the bounds where needed
+     */
+    private static <Left, Right> void sweep(Interval<Left>[] lefts, Interval<Right>[] rights,
+                                            int leftFrom, int rightFrom, int leftTo, int rightTo,
+                                            IntervalPairVisitor<Left, Right> visitor) {
+        int i = leftFrom;
+        int j = rightFrom;
+        while (i < leftTo || j < rightTo) {
+            if (j >= rightTo || (i < leftTo && lefts[i].getStart() <= rights[j].getStart())) {
+                // every right interval from j on starts at or after this one
+                Interval<Left> interval = lefts[i++];
+                for (int k = j; k < rights.length && rights[k].getStart() < interval.getEnd(); k++) {
+                    if (rights[k].getEnd() > interval.getStart())
+                        visitor.visit(interval, rights[k]);
+                }
+            } else {
+                // every left interval from i on starts strictly after this one
+                Interval<Right> interval = rights[j++];
+                for (int k = i; k < lefts.length && lefts[k].getStart() < interval.getEnd(); k++)
+                    visitor.visit(lefts[k], interval);
+            }
+        }
+    }
+
+    /**
+     * @return how many left intervals come among the first rank intervals of the merged order
+     */
+    private static int split(Interval<?>[] lefts, Interval<?>[] rights, int rank) {
+        int from = Math.max(0, rank - rights.length);
+        int to = Math.min(rank, lefts.length);
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            int j = rank - middle;
+            // the left interval at middle precedes the last right one taken, so take more lefts
+            if (j > 0 && lefts[middle].getStart() <= rights[j - 1].getStart())
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+
+    /**
+     * Sweeps the partitions [from, to) of the merged order
+     */
+    private static class JoinTask<Left, Right> extends RecursiveAction {
+
+        private final Interval<Left>[] lefts;
+        private final Interval<Right>[] rights;
+        private final int[] leftSplits;
+        private final int[] rightSplits;
+        private final int from;
+        private final int to;
+        private final IntervalPairVisitor<Left, Right> visitor;
+
+        JoinTask(Interval<Left>[] lefts, Interval<Right>[] rights, int[] leftSplits, int[] rightSplits,
+                 int from, int to, IntervalPairVisitor<Left, Right> visitor) {
+            this.lefts = lefts;
+            this.rights = rights;
+            this.leftSplits = leftSplits;
+            this.rightSplits = rightSplits;
+            this.from = from;
+            this.to = to;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                sweep(lefts, rights, leftSplits[from], rightSplits[from], leftSplits[to], rightSplits[to], visitor);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new JoinTask<Left, Right>(lefts, rights, leftSplits, rightSplits, from, middle, visitor),
+                    new JoinTask<Left, Right>(lefts, rights, leftSplits, rightSplits, middle, to, visitor));
+        }
+    }
+}
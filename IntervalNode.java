@@ -3,6 +3,7 @@ package com.kg.smartfactory.common.interval.tree;
 import java.io.Serializable;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
 
 /**
  * The Node class contains the interval tree information for one single node
@@ -11,9 +12,37 @@ import java.util.Map.Entry;
  */
 public class IntervalNode<Type> implements Serializable {
 
+    /**
+     * Orders intervals by descending end, then descending start
+     */
+    static final Comparator<Interval<?>> END_DESCENDING = new Comparator<Interval<?>>() {
+        @Override
+        public int compare(Interval<?> interval1, Interval<?> interval2) {
+            if (interval1.getEnd() < interval2.getEnd()) {
+                return 1;
+            } else if (interval1.getEnd() > interval2.getEnd()) {
+                return -1;
+            } else if (interval1.getStart() < interval2.getStart()) {
+                return 1;
+            } else if (interval1.getStart() > interval2.getStart()) {
+                return -1;
+            } else if ((interval1.getData() != null) && (interval2.getData() != null)) {
+                return interval1.getData().toString().compareTo(interval2.getData().toString());
+            }
+            return 0;
+        }
+    };
+
     private SortedMap<Interval<Type>, Long> intervals;
     private long center;
 
+    // the center-crossing intervals, repeated by multiplicity, by ascending start and by descending end
+    private Interval<Type>[] startOrdered;
+    private Interval<Type>[] endOrdered;
+
+    // the number of interval occurrences held by this node and its descendants
+    private int subtreeSize;
+
     public SortedMap<Interval<Type>, Long> getIntervals() {
         return intervals;
     }
@@ -28,45 +57,27 @@ public class IntervalNode<Type> implements Serializable {
         leftNode = null;
         rightNode = null;
         this.parent = parent;
+        indexIntervals();
     }
 
     public IntervalNode(List<Interval<Type>> intervalList, IntervalNode<Type> parent) {
+        this(parent);
+        IntervalNodeBuilder.build(intervalList, this);
+    }
 
+    /**
+     * Make this node hold the intervals in [from, to) of the array around center,
+     * heading a subtree of subtreeSize intervals in total
+     */
+    void init(long center, Interval<Type>[] intervalArray, int from, int to, int subtreeSize) {
+        this.center = center;
+        this.subtreeSize = subtreeSize;
         intervals = new TreeMap<Interval<Type>, Long>();
-        this.parent = parent;
-
-        SortedSet<Long> endpoints = new TreeSet<Long>();
-
-        for (Interval<Type> interval : intervalList) {
-            endpoints.add(interval.getStart());
-            endpoints.add(interval.getEnd());
-        }
-
-        long median = getMedian(endpoints);
-        center = median;
-
-        List<Interval<Type>> left = new ArrayList<Interval<Type>>();
-        List<Interval<Type>> right = new ArrayList<Interval<Type>>();
-
-        for (Interval<Type> interval : intervalList) {
-            if (interval.getEnd() < median)
-                left.add(interval);
-            else if (interval.getStart() > median)
-                right.add(interval);
-            else {
-                Long count = intervals.get(interval);
-                if (count == null) {
-                    intervals.put(interval, 0L);
-                    count = 0L;
-                }
-                intervals.put(interval, count + 1);
-            }
+        for (int i = from; i < to; i++) {
+            Long count = intervals.get(intervalArray[i]);
+            intervals.put(intervalArray[i], count == null ? 1L : count + 1);
         }
-
-        if (left.size() > 0)
-            leftNode = new IntervalNode<Type>(left, this);
-        if (right.size() > 0)
-            rightNode = new IntervalNode<Type>(right, this);
+        indexIntervals();
     }
 
     /**
@@ -77,19 +88,7 @@ public class IntervalNode<Type> implements Serializable {
      */
     public List<Interval<Type>> stab(long time) {
         List<Interval<Type>> result = new ArrayList<Interval<Type>>();
-
-        for (Entry<Interval<Type>, Long> entry : intervals.entrySet()) {
-            if (entry.getKey().contains(time))
-                for (Long i = 0L; i < entry.getValue(); i++)
-                    result.add(entry.getKey());
-            else if (entry.getKey().getStart() > time)
-                break;
-        }
-
-        if (time < center && leftNode != null)
-            result.addAll(leftNode.stab(time));
-        else if (time > center && rightNode != null)
-            result.addAll(rightNode.stab(time));
+        forEachContaining(time, new CollectingConsumer<Interval<Type>>(result));
         return result;
     }
 
@@ -101,21 +100,135 @@ public class IntervalNode<Type> implements Serializable {
      */
     public List<Interval<Type>> query(Interval<?> target) {
         List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        forEachIntersecting(target.getStart(), target.getEnd(), new CollectingConsumer<Interval<Type>>(result));
+        return result;
+    }
 
-        for (Entry<Interval<Type>, Long> entry : intervals.entrySet()) {
-            if (entry.getKey().intersects(target))
-                for (Long i = 0L; i < entry.getValue(); i++) {
-                    result.add(entry.getKey());
+    /**
+     * Perform a stabbing query on the node without allocating,
+     * passing every interval containing time to the consumer
+     *
+     * @param time     the time to query at
+     * @param consumer receives each matching interval once per multiplicity
+     */
+    public void forEachContaining(long time, Consumer<? super Interval<Type>> consumer) {
+        IntervalNode<Type> node = this;
+        while (node != null) {
+            // every interval here spans the center, so left of it only the start matters and right of it only the end
+            if (time < node.center) {
+                for (Interval<Type> interval : node.startOrdered) {
+                    if (interval.getStart() > time)
+                        break;
+                    if (interval.contains(time))
+                        consumer.accept(interval);
+                }
+                node = node.leftNode;
+            } else {
+                for (Interval<Type> interval : node.endOrdered) {
+                    if (interval.getEnd() <= time)
+                        break;
+                    if (interval.contains(time))
+                        consumer.accept(interval);
                 }
-            else if (entry.getKey().getStart() > target.getEnd())
-                break;
+                node = time > node.center ? node.rightNode : null;
+            }
         }
+    }
 
-        if (target.getStart() < center && leftNode != null)
-            result.addAll(leftNode.query(target));
-        if (target.getEnd() > center && rightNode != null)
-            result.addAll(rightNode.query(target));
-        return result;
+    /**
+     * Perform a stabbing query on the node that stops after limit matches
+     *
+     * @param time   the time to query at
+     * @param limit  the most intervals to add
+     * @param result receives the matching intervals, once per multiplicity
+     * @return the number of intervals added
+     */
+    int collectContaining(long time, int limit, Collection<? super Interval<Type>> result) {
+        int added = 0;
+        IntervalNode<Type> node = this;
+        while (node != null && added < limit) {
+            if (time < node.center) {
+                for (Interval<Type> interval : node.startOrdered) {
+                    if (interval.getStart() > time || added == limit)
+                        break;
+                    if (interval.contains(time)) {
+                        result.add(interval);
+                        added++;
+                    }
+                }
+                node = node.leftNode;
+            } else {
+                for (Interval<Type> interval : node.endOrdered) {
+                    if (interval.getEnd() <= time || added == limit)
+                        break;
+                    if (interval.contains(time)) {
+                        result.add(interval);
+                        added++;
+                    }
+                }
+                node = time > node.center ? node.rightNode : null;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Perform an interval intersection query on the node without allocating,
+     * passing every interval intersecting [start, end) to the consumer
+     *
+     * @param start    the start of the interval to intersect
+     * @param end      the end of the interval to intersect
+     * @param consumer receives each matching interval once per multiplicity
+     */
+    public void forEachIntersecting(long start, long end, Consumer<? super Interval<Type>> consumer) {
+        scanIntersecting(start, end, consumer);
+
+        if (start < center && leftNode != null)
+            leftNode.forEachIntersecting(start, end, consumer);
+        if (end > center && rightNode != null)
+            rightNode.forEachIntersecting(start, end, consumer);
+    }
+
+    /**
+     * Pass the intervals of this node alone that intersect [start, end) to the consumer
+     */
+    void scanIntersecting(long start, long end, Consumer<? super Interval<Type>> consumer) {
+        if (start < center) {
+            for (Interval<Type> interval : startOrdered) {
+                if (interval.getStart() >= end)
+                    break;
+                if (interval.getEnd() > start)
+                    consumer.accept(interval);
+            }
+        } else {
+            for (Interval<Type> interval : endOrdered) {
+                if (interval.getEnd() <= start)
+                    break;
+                if (interval.getStart() < end)
+                    consumer.accept(interval);
+            }
+        }
+    }
+
+    /**
+     * @return the intervals at this node ordered by ascending start, each repeated by its multiplicity
+     */
+    Interval<Type>[] getStartOrdered() {
+        return startOrdered;
+    }
+
+    /**
+     * @return the intervals at this node ordered by descending end, each repeated by its multiplicity
+     */
+    Interval<Type>[] getEndOrdered() {
+        return endOrdered;
+    }
+
+    /**
+     * @return the number of intervals held by this node and its descendants, counting multiplicities
+     */
+    int getSubtreeSize() {
+        return subtreeSize;
     }
 
     public long getCenter() {
@@ -143,18 +256,23 @@ public class IntervalNode<Type> implements Serializable {
     }
 
     /**
-     * @param set the set to look on
-     * @return the median of the set, not interpolated
+     * Lay the interval map out as the start and end ordered arrays used by the queries
      */
-    private Long getMedian(SortedSet<Long> set) {
+    @SuppressWarnings("unchecked")
+    private void indexIntervals() {
+        int total = 0;
+        for (Long count : intervals.values())
+            total += count;
+
+        startOrdered = (Interval<Type>[]) new Interval[total];
         int i = 0;
-        int middle = set.size() / 2;
-        for (Long point : set) {
-            if (i == middle)
-                return point;
-            i++;
+        for (Entry<Interval<Type>, Long> entry : intervals.entrySet()) {
+            for (long j = 0; j < entry.getValue(); j++)
+                startOrdered[i++] = entry.getKey();
         }
-        return 0L;
+
+        endOrdered = startOrdered.clone();
+        Arrays.sort(endOrdered, END_DESCENDING);
     }
 
     @Override
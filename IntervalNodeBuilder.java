@@ -0,0 +1,166 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bulk builds an {@link IntervalNode} tree from a collection of intervals
+ *
+ * All intervals are copied once into one array, which every level partitions in place
+ * into [left | center | right] around the median endpoint. The median is found by
+ * linear time selection over a primitive endpoint array shared by the whole build, each
+ * subtree working in its own disjoint region of it. Subtrees larger than
+ * {@link #PARALLEL_THRESHOLD} intervals are built as parallel fork-join tasks
+ *
+ * @param <Type> the type of data being stored
+ */
+final class IntervalNodeBuilder<Type> extends RecursiveAction {
+
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final Interval<Type>[] intervals;
+    private final long[] endpoints;
+    private final int from;
+    private final int to;
+    private final IntervalNode<Type> node;
+
+    private IntervalNodeBuilder(Interval<Type>[] intervals, long[] endpoints, int from, int to, IntervalNode<Type> node) {
+        this.intervals = intervals;
+        this.endpoints = endpoints;
+        this.from = from;
+        this.to = to;
+        this.node = node;
+    }
+
+    /**
+     * @param intervalList the intervals to build from
+     * @return the head of the built tree
+     */
+    static <Type> IntervalNode<Type> build(Collection<Interval<Type>> intervalList) {
+        IntervalNode<Type> head = new IntervalNode<Type>((IntervalNode<Type>) null);
+        build(intervalList, head);
+        return head;
+    }
+
+    /**
+     * Build the tree for intervalList into an existing, empty node
+     *
+     * @param intervalList the intervals to build from
+     * @param node         the node to become the head of the built tree
+     */
+    @SuppressWarnings("unchecked")
+    static <Type> void build(Collection<Interval<Type>> intervalList, IntervalNode<Type> node) {
+        Interval<Type>[] intervals = intervalList.toArray((Interval<Type>[]) new Interval[intervalList.size()]);
+        IntervalNodeBuilder<Type> builder = new IntervalNodeBuilder<Type>(intervals, new long[2 * intervals.length],
+                0, intervals.length, node);
+        if (intervals.length > PARALLEL_THRESHOLD)
+            ForkJoinPool.commonPool().invoke(builder);
+        else
+            builder.invoke();
+    }
+
+    @Override
+    protected void compute() {
+        long median = 0;
+        if (to > from) {
+            for (int i = from; i < to; i++) {
+                endpoints[2 * i] = intervals[i].getStart();
+                endpoints[2 * i + 1] = intervals[i].getEnd();
+            }
+            median = select(endpoints, 2 * from, 2 * to, from + to);
+        }
+
+        // three way partition: [from, lower) ends before the median, [upper, to) starts after it
+        int lower = from;
+        int upper = to;
+        int i = from;
+        while (i < upper) {
+            Interval<Type> interval = intervals[i];
+            if (interval.getEnd() < median) {
+                swap(i++, lower++);
+            } else if (interval.getStart() > median) {
+                swap(i, --upper);
+            } else {
+                i++;
+            }
+        }
+
+        node.init(median, intervals, lower, upper, to - from);
+
+        IntervalNodeBuilder<Type> left = null;
+        if (lower > from) {
+            IntervalNode<Type> leftNode = new IntervalNode<Type>(node);
+            node.setLeft(leftNode);
+            left = new IntervalNodeBuilder<Type>(intervals, endpoints, from, lower, leftNode);
+        }
+        IntervalNodeBuilder<Type> right = null;
+        if (to > upper) {
+            IntervalNode<Type> rightNode = new IntervalNode<Type>(node);
+            node.setRight(rightNode);
+            right = new IntervalNodeBuilder<Type>(intervals, endpoints, upper, to, rightNode);
+        }
+
+        if (left != null && right != null && to - from > PARALLEL_THRESHOLD) {
+            invokeAll(left, right);
+        } else {
+            if (left != null)
+                left.compute();
+            if (right != null)
+                right.compute();
+        }
+    }
+
+    private void swap(int i, int j) {
+        Interval<Type> interval = intervals[i];
+        intervals[i] = intervals[j];
+        intervals[j] = interval;
+    }
+
+    /**
+     * Quickselect with pivots the median of three random samples, reordering values[from, to)
+     * Sampling at random keeps the expected time linear whatever order the input comes in,
+     * such as the interleaved starts and ends of intervals sorted by start
+     *
+     * @return the value that would be at index k if values[from, to) were sorted
+     */
+    static long select(long[] values, int from, int to, int k) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lo = from;
+        int hi = to - 1;
+        while (hi > lo) {
+            int span = hi - lo + 1;
+            long pivot = medianOf(values[lo + random.nextInt(span)], values[lo + random.nextInt(span)],
+                    values[lo + random.nextInt(span)]);
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (values[i] < pivot)
+                    i++;
+                while (values[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    long value = values[i];
+                    values[i++] = values[j];
+                    values[j--] = value;
+                }
+            }
+
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                return values[k];
+        }
+        return values[k];
+    }
+
+    private static long medianOf(long a, long b, long c) {
+        if (a < b)
+            return b < c ? b : Math.max(a, c);
+        return a < c ? a : Math.max(b, c);
+    }
+}
@@ -0,0 +1,16 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * Receives the overlapping pairs found by an {@link IntervalJoin}
+ *
+ * @param <Left>  the type of data associated with the intervals of the left side
+ * @param <Right> the type of data associated with the intervals of the right side
+ */
+public interface IntervalPairVisitor<Left, Right> {
+
+    /**
+     * @param left  the interval from the left side
+     * @param right the interval from the right side, intersecting left
+     */
+    void visit(Interval<Left> left, Interval<Right> right);
+}
@@ -0,0 +1,200 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the intervals of an {@link IntervalNode} tree, optionally only
+ * those intersecting [start, end), that splits along the tree structure
+ *
+ * The remaining work is a queue of whole subtrees and runs of node intervals in
+ * encounter order: for every node its left subtree, its own intervals by ascending start,
+ * then its right subtree. A split expands a lone subtree into those three parts and
+ * hands off a prefix holding about half of the remaining intervals, so parallel streams
+ * fan out like the tree does. Subtree sizes are exact, so an unbounded spliterator and
+ * every one split from it is SIZED; a bounded one prunes subtrees outside the window and
+ * only estimates, by the size of what is left to examine.
+ *
+ * The encounter order is not sorted by start, as a left subtree may hold intervals
+ * starting after some of its parent's. The tree must not be rebuilt while traversing
+ *
+ * @param <Type> the type of data being stored
+ */
+final class IntervalSpliterator<Type> implements Spliterator<Interval<Type>> {
+
+    private final boolean bounded;
+    private final long start;
+    private final long end;
+
+    private final ArrayDeque<Segment<Type>> pending;
+    private long estimate;
+
+    /**
+     * @param head the head of the tree to traverse in full
+     */
+    IntervalSpliterator(IntervalNode<Type> head) {
+        this(false, 0, 0, new ArrayDeque<Segment<Type>>(), 0);
+        push(head);
+    }
+
+    /**
+     * @param head  the head of the tree to traverse
+     * @param start the start of the interval to intersect
+     * @param end   the end of the interval to intersect
+     */
+    IntervalSpliterator(IntervalNode<Type> head, long start, long end) {
+        this(true, start, end, new ArrayDeque<Segment<Type>>(), 0);
+        push(head);
+    }
+
+    private IntervalSpliterator(boolean bounded, long start, long end, ArrayDeque<Segment<Type>> pending, long estimate) {
+        this.bounded = bounded;
+        this.start = start;
+        this.end = end;
+        this.pending = pending;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Interval<Type>> action) {
+        while (true) {
+            Segment<Type> segment = pending.peekFirst();
+            if (segment == null)
+                return false;
+
+            if (segment.node != null) {
+                pending.pollFirst();
+                expand(segment.node);
+                continue;
+            }
+
+            while (segment.from < segment.to) {
+                Interval<Type> interval = segment.intervals[segment.from++];
+                estimate--;
+                if (!bounded || (interval.getStart() < end && interval.getEnd() > start)) {
+                    action.accept(interval);
+                    return true;
+                }
+            }
+            pending.pollFirst();
+        }
+    }
+
+    @Override
+    public Spliterator<Interval<Type>> trySplit() {
+        while (pending.size() == 1 && pending.peekFirst().node != null)
+            expand(pending.pollFirst().node);
+
+        if (pending.size() == 1) {
+            // a single run of intervals left, split it down the middle
+            Segment<Type> segment = pending.peekFirst();
+            int middle = (segment.from + segment.to) >>> 1;
+            if (middle == segment.from)
+                return null;
+            ArrayDeque<Segment<Type>> prefix = new ArrayDeque<Segment<Type>>();
+            prefix.add(new Segment<Type>(null, segment.intervals, segment.from, middle));
+            segment.from = middle;
+            estimate -= middle - prefix.peekFirst().from;
+            return new IntervalSpliterator<Type>(bounded, start, end, prefix, prefix.peekFirst().size());
+        }
+        if (pending.size() < 2)
+            return null;
+
+        ArrayDeque<Segment<Type>> prefix = new ArrayDeque<Segment<Type>>();
+        long prefixSize = 0;
+        long half = estimate / 2;
+        // take segments while that brings the prefix closer to half
+        do {
+            Segment<Type> segment = pending.pollFirst();
+            prefix.addLast(segment);
+            prefixSize += segment.size();
+        } while (pending.size() > 1 && prefixSize + pending.peekFirst().size() / 2 <= half);
+
+        estimate -= prefixSize;
+        return new IntervalSpliterator<Type>(bounded, start, end, prefix, prefixSize);
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return bounded ? ORDERED | NONNULL : ORDERED | NONNULL | SIZED | SUBSIZED;
+    }
+
+    /**
+     * Replace a whole subtree at the front of the queue by its left subtree, own intervals
+     * and right subtree, leaving out what cannot intersect the window
+     */
+    private void expand(IntervalNode<Type> node) {
+        estimate -= node.getSubtreeSize();
+
+        IntervalNode<Type> left = node.getLeft();
+        IntervalNode<Type> right = node.getRight();
+        Interval<Type>[] intervals = node.getStartOrdered();
+        int to = intervals.length;
+        if (bounded) {
+            if (start >= node.getCenter())
+                left = null;
+            if (end <= node.getCenter())
+                right = null;
+            to = firstStartingAtOrAfter(intervals, end);
+        }
+
+        push(right);
+        if (to > 0) {
+            pending.addFirst(new Segment<Type>(null, intervals, 0, to));
+            estimate += to;
+        }
+        push(left);
+    }
+
+    private void push(IntervalNode<Type> node) {
+        if (node != null && node.getSubtreeSize() > 0) {
+            pending.addFirst(new Segment<Type>(node, null, 0, 0));
+            estimate += node.getSubtreeSize();
+        }
+    }
+
+    /**
+     * @param intervals intervals by ascending start
+     * @return the index of the first interval starting at or after time
+     */
+    private static int firstStartingAtOrAfter(Interval<?>[] intervals, long time) {
+        int from = 0;
+        int to = intervals.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (intervals[middle].getStart() < time)
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+
+    /**
+     * Either a whole subtree or the run [from, to) of one node's start ordered intervals
+     */
+    private static final class Segment<Type> {
+
+        final IntervalNode<Type> node;
+        final Interval<Type>[] intervals;
+        int from;
+        final int to;
+
+        Segment(IntervalNode<Type> node, Interval<Type>[] intervals, int from, int to) {
+            this.node = node;
+            this.intervals = intervals;
+            this.from = from;
+            this.to = to;
+        }
+
+        long size() {
+            return node != null ? node.getSubtreeSize() : to - from;
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.kg.smartfactory.common.interval.tree;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An Interval Tree is essentially a map from intervals to objects, which
@@ -17,6 +21,13 @@ public class IntervalTree<Type> implements Serializable {
     private List<Interval<Type>> intervalList;
     private boolean inSync;
     private int size;
+    private transient EndpointIndex endpoints;
+    private transient Interval<Type>[] startOrdered;
+    private transient Interval<Type>[] endOrdered;
+    private transient CoverageIndex coverage;
+    private transient DepthIndex depth;
+    private transient IntervalTreeListener listener;
+    private transient QueryCache<Type> cache;
 
     /**
      * Instantiate a new interval tree with no intervals
@@ -34,7 +45,7 @@ public class IntervalTree<Type> implements Serializable {
      * @param intervalList the list of intervals to use
      */
     public IntervalTree(List<Interval<Type>> intervalList) {
-        this.head = new IntervalNode<Type>(intervalList, null);
+        this.head = IntervalNodeBuilder.build(intervalList);
         this.intervalList = new ArrayList<Interval<Type>>();
         this.intervalList.addAll(intervalList);
         this.inSync = true;
@@ -49,10 +60,8 @@ public class IntervalTree<Type> implements Serializable {
      * @return the data associated with all intervals that contain time
      */
     public List<Type> get(long time) {
-        List<Interval<Type>> intervals = getIntervals(time);
         List<Type> result = new ArrayList<Type>();
-        for (Interval<Type> interval : intervals)
-            result.add(interval.getData());
+        forEachContaining(time, new DataCollectingConsumer<Type>(result));
         return result;
     }
 
@@ -64,8 +73,9 @@ public class IntervalTree<Type> implements Serializable {
      * @return all intervals that contain time
      */
     public List<Interval<Type>> getIntervals(long time) {
-        build();
-        return head.stab(time);
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        forEachContaining(time, new CollectingConsumer<Interval<Type>>(result));
+        return result;
     }
 
     /**
@@ -77,10 +87,13 @@ public class IntervalTree<Type> implements Serializable {
      * @return the data associated with all intervals that intersect target
      */
     public List<Type> get(long start, long end) {
-        List<Interval<Type>> intervals = getIntervals(start, end);
         List<Type> result = new ArrayList<Type>();
-        for (Interval<Type> interval : intervals)
-            result.add(interval.getData());
+        if (cache != null) {
+            for (Interval<Type> interval : cachedIntervals(start, end))
+                result.add(interval.getData());
+            return result;
+        }
+        forEachIntersecting(start, end, new DataCollectingConsumer<Type>(result));
         return result;
     }
 
@@ -105,8 +118,11 @@ public class IntervalTree<Type> implements Serializable {
      * @return all intervals that intersect target
      */
     public List<Interval<Type>> getIntervals(long start, long end) {
-        build();
-        return head.query(new Interval<Type>(start, end, null));
+        if (cache != null)
+            return new ArrayList<Interval<Type>>(cachedIntervals(start, end));
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        forEachIntersecting(start, end, new CollectingConsumer<Interval<Type>>(result));
+        return result;
     }
 
     /**
@@ -121,6 +137,309 @@ public class IntervalTree<Type> implements Serializable {
         return getIntervals(start.getTime(), end.getTime());
     }
 
+    /**
+     * Perform a batch of stabbing queries with one coordinated traversal of the tree
+     * Will rebuild the tree if out of sync
+     *
+     * @param times the times to stab, in any order
+     * @return for each index i, all intervals that contain times[i]
+     */
+    public List<List<Interval<Type>>> getIntervals(long[] times) {
+        return getIntervals(times, (ForkJoinPool) null);
+    }
+
+    /**
+     * Perform a batch of stabbing queries with one coordinated traversal of the tree,
+     * splitting large batches across the pool
+     * Will rebuild the tree if out of sync
+     *
+     * @param times the times to stab, in any order
+     * @param pool  the pool to run in, or null to run in the calling thread
+     * @return for each index i, all intervals that contain times[i]
+     */
+    public List<List<Interval<Type>>> getIntervals(long[] times, ForkJoinPool pool) {
+        build();
+        return BatchQuery.stab(head, times, pool);
+    }
+
+    /**
+     * Perform a batch of interval queries with one coordinated traversal of the tree
+     * Will rebuild the tree if out of sync
+     *
+     * @param starts the starts of the intervals to check, in any order
+     * @param ends   the ends of the intervals to check, parallel to starts
+     * @return for each index i, all intervals that intersect [starts[i], ends[i])
+     */
+    public List<List<Interval<Type>>> getIntervals(long[] starts, long[] ends) {
+        return getIntervals(starts, ends, (ForkJoinPool) null);
+    }
+
+    /**
+     * Perform a batch of interval queries with one coordinated traversal of the tree,
+     * splitting large batches across the pool
+     * Will rebuild the tree if out of sync
+     *
+     * @param starts the starts of the intervals to check, in any order
+     * @param ends   the ends of the intervals to check, parallel to starts
+     * @param pool   the pool to run in, or null to run in the calling thread
+     * @return for each index i, all intervals that intersect [starts[i], ends[i])
+     */
+    public List<List<Interval<Type>>> getIntervals(long[] starts, long[] ends, ForkJoinPool pool) {
+        build();
+        return BatchQuery.query(head, starts, ends, pool);
+    }
+
+    /**
+     * Perform a stabbing query without allocating, passing every interval that contains time to the consumer
+     * Will rebuild the tree if out of sync
+     *
+     * @param time     the time to stab
+     * @param consumer receives each interval that contains time
+     */
+    public void forEachContaining(long time, Consumer<? super Interval<Type>> consumer) {
+        build();
+        if (listener == null && !IntervalTreeEvents.STAB.isEnabled()) {
+            head.forEachContaining(time, consumer);
+            return;
+        }
+
+        IntervalTreeEvents.Stab event = new IntervalTreeEvents.Stab();
+
+        CountingConsumer<Interval<Type>> counting = new CountingConsumer<Interval<Type>>(consumer);
+        long startNanos = System.nanoTime();
+        event.begin();
+        head.forEachContaining(time, counting);
+        event.end();
+        long durationNanos = System.nanoTime() - startNanos;
+
+        if (event.shouldCommit()) {
+            event.time = time;
+            event.results = counting.getCount();
+            event.commit();
+        }
+        if (listener != null)
+            listener.stabbed(durationNanos, counting.getCount());
+    }
+
+    /**
+     * Perform an interval query without allocating, passing every interval that intersects target to the consumer
+     * Will rebuild the tree if out of sync
+     *
+     * @param start    the start of the interval to check
+     * @param end      the end of the interval to check
+     * @param consumer receives each interval that intersects target
+     */
+    public void forEachIntersecting(long start, long end, Consumer<? super Interval<Type>> consumer) {
+        build();
+        if (listener == null && !IntervalTreeEvents.RANGE_QUERY.isEnabled()) {
+            head.forEachIntersecting(start, end, consumer);
+            return;
+        }
+
+        IntervalTreeEvents.RangeQuery event = new IntervalTreeEvents.RangeQuery();
+
+        CountingConsumer<Interval<Type>> counting = new CountingConsumer<Interval<Type>>(consumer);
+        long startNanos = System.nanoTime();
+        event.begin();
+        head.forEachIntersecting(start, end, counting);
+        event.end();
+        long durationNanos = System.nanoTime() - startNanos;
+
+        if (event.shouldCommit()) {
+            event.start = start;
+            event.end = end;
+            event.results = counting.getCount();
+            event.commit();
+        }
+        if (listener != null)
+            listener.rangeQueried(durationNanos, counting.getCount());
+    }
+
+    /**
+     * Perform a stabbing query into a reusable buffer, which is cleared first
+     * Will rebuild the tree if out of sync
+     *
+     * @param time   the time to stab
+     * @param buffer the buffer to fill with all intervals that contain time
+     * @return the number of intervals found
+     */
+    public int getIntervals(long time, IntervalBuffer<Type> buffer) {
+        buffer.clear();
+        forEachContaining(time, buffer);
+        return buffer.size();
+    }
+
+    /**
+     * Perform an interval query into a reusable buffer, which is cleared first
+     * Will rebuild the tree if out of sync
+     *
+     * @param start  the start of the interval to check
+     * @param end    the end of the interval to check
+     * @param buffer the buffer to fill with all intervals that intersect target
+     * @return the number of intervals found
+     */
+    public int getIntervals(long start, long end, IntervalBuffer<Type> buffer) {
+        buffer.clear();
+        forEachIntersecting(start, end, buffer);
+        return buffer.size();
+    }
+
+    /**
+     * Count the intervals containing time without materializing them, in O(log n)
+     * Will rebuild the tree if out of sync
+     *
+     * @param time the time to stab
+     * @return the number of intervals that contain time, counting duplicates
+     */
+    public int count(long time) {
+        return endpointIndex().countContaining(time);
+    }
+
+    /**
+     * Count the intervals intersecting an interval without materializing them, in O(log n)
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the number of intervals that intersect target, counting duplicates
+     */
+    public int count(long start, long end) {
+        if (end <= start) {
+            // an empty target is not covered by the endpoint counts, fall back to visiting
+            final int[] count = new int[1];
+            forEachIntersecting(start, end, new Consumer<Interval<Type>>() {
+                public void accept(Interval<Type> interval) {
+                    count[0]++;
+                }
+            });
+            return count[0];
+        }
+        return endpointIndex().countIntersecting(start, end);
+    }
+
+    /**
+     * Measure how much of a window is covered by intervals, counting overlaps once
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the window
+     * @param end   the end of the window
+     * @return the length of [start, end) within at least one interval
+     */
+    public long coveredLength(long start, long end) {
+        return coverageIndex().coveredLength(start, end);
+    }
+
+    /**
+     * Merge the intervals within a window into the disjoint segments they cover
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the window
+     * @param end   the end of the window
+     * @return the covered parts of [start, end) by ascending start, with null data,
+     * overlapping or touching intervals merged
+     */
+    public List<Interval<Type>> getUnion(long start, long end) {
+        return coverageIndex().union(start, end);
+    }
+
+    /**
+     * Find the idle stretches of a window that no interval covers
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the window
+     * @param end   the end of the window
+     * @return the uncovered parts of [start, end) by ascending start, with null data
+     */
+    public List<Interval<Type>> getGaps(long start, long end) {
+        return coverageIndex().gaps(start, end);
+    }
+
+    /**
+     * Find the peak concurrency within a window, such as the most jobs running at once
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the window
+     * @param end   the end of the window
+     * @return the greatest number of intervals containing one time in [start, end), counting
+     * duplicates, and the earliest time reaching it; for an empty window the depth at start
+     */
+    public DepthPoint maxDepth(long start, long end) {
+        return depthIndex().maxDepth(start, end);
+    }
+
+    /**
+     * Trace the number of intervals containing each time of a window as a step function
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the window
+     * @param end   the end of the window
+     * @return the depth at start, then each time in (start, end) at which the depth changes
+     * with the depth from there on, by ascending time
+     */
+    public List<DepthPoint> getDepthProfile(long start, long end) {
+        return depthIndex().profile(start, end);
+    }
+
+    /**
+     * Find the next interval to start, such as the next scheduled event at or after time
+     * Will rebuild the tree if out of sync
+     *
+     * @param time the time to search from
+     * @return the interval with the earliest start at or after time, the shortest of those
+     * starting together, or null if none starts that late
+     */
+    public Interval<Type> firstStartingAtOrAfter(long time) {
+        Interval<Type>[] byStart = startOrdered();
+        int index = firstStarting(byStart, time, true);
+        return index < byStart.length ? byStart[index] : null;
+    }
+
+    /**
+     * Find the last interval to end, such as the last event that was over by time
+     * Will rebuild the tree if out of sync
+     *
+     * @param time the time to search back from
+     * @return the interval with the latest end at or before time, the shortest of those
+     * ending together, or null if none ends that early
+     */
+    public Interval<Type> lastEndingAtOrBefore(long time) {
+        Interval<Type>[] byEnd = endOrdered();
+        int index = firstEndingAtOrBefore(byEnd, time);
+        return index < byEnd.length ? byEnd[index] : null;
+    }
+
+    /**
+     * Find the intervals closest to time, measured by the gap between time and the interval,
+     * which is zero for those containing time or ending exactly at it
+     * Will rebuild the tree if out of sync
+     *
+     * @param time  the time to search around
+     * @param count the most intervals to return
+     * @return up to count intervals by ascending distance from time, ties between one ended
+     * before and one starting after going to the one ended before
+     */
+    public List<Interval<Type>> nearest(long time, int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative count " + count);
+        Interval<Type>[] byStart = startOrdered();
+        Interval<Type>[] byEnd = endOrdered();
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>(Math.min(count, byStart.length));
+        head.collectContaining(time, count, result);
+
+        // every other interval either starts after time or has ended by it
+        int after = firstStarting(byStart, time, false);
+        int before = firstEndingAtOrBefore(byEnd, time);
+        while (result.size() < count && (after < byStart.length || before < byEnd.length)) {
+            // both gaps are differences of ordered longs, exact as unsigned values
+            if (before == byEnd.length || (after < byStart.length
+                    && Long.compareUnsigned(byStart[after].getStart() - time, time - byEnd[before].getEnd()) < 0))
+                result.add(byStart[after++]);
+            else
+                result.add(byEnd[before++]);
+        }
+        return result;
+    }
+
     /**
      * Add an interval object to the interval tree's list
      * Will not rebuild the tree until the next query or call to build
@@ -130,6 +449,7 @@ public class IntervalTree<Type> implements Serializable {
     public void addInterval(Interval<Type> interval) {
         intervalList.add(interval);
         inSync = false;
+        invalidate(interval.getStart(), interval.getEnd());
     }
 
     /**
@@ -143,6 +463,7 @@ public class IntervalTree<Type> implements Serializable {
     public void addInterval(long begin, long end, Type data) {
         intervalList.add(new Interval<Type>(begin, end, data));
         inSync = false;
+        invalidate(begin, end);
     }
 
     /**
@@ -166,6 +487,7 @@ public class IntervalTree<Type> implements Serializable {
     public void removeInterval(Interval<Type> interval) {
         intervalList.remove(interval);
         inSync = false;
+        invalidate(interval.getStart(), interval.getEnd());
     }
 
     /**
@@ -177,6 +499,7 @@ public class IntervalTree<Type> implements Serializable {
     public void removeIntervals(Collection<Interval<Type>> intervals) {
         for (Interval<Type> interval : intervals) {
             intervalList.remove(interval);
+            invalidate(interval.getStart(), interval.getEnd());
         }
 
         inSync = false;
@@ -189,6 +512,8 @@ public class IntervalTree<Type> implements Serializable {
     public void clear() {
         intervalList.clear();
         inSync = false;
+        if (cache != null)
+            cache.clear();
     }
 
     public Iterator<Interval<Type>> iterator() {
@@ -210,12 +535,131 @@ public class IntervalTree<Type> implements Serializable {
      */
     public void build() {
         if (!inSync) {
-            head = new IntervalNode<Type>(intervalList, null);
+            IntervalTreeEvents.Rebuild event = new IntervalTreeEvents.Rebuild();
+            long startNanos = System.nanoTime();
+            event.begin();
+            head = IntervalNodeBuilder.build(intervalList);
+            endpoints = null;
+            startOrdered = null;
+            endOrdered = null;
+            coverage = null;
+            depth = null;
             inSync = true;
             size = intervalList.size();
+            event.end();
+            long durationNanos = System.nanoTime() - startNanos;
+
+            if (listener != null || event.shouldCommit()) {
+                IntervalTreeStats stats = IntervalTreeStats.of(head);
+                if (event.shouldCommit()) {
+                    event.intervals = stats.getIntervals();
+                    event.nodes = stats.getNodes();
+                    event.depth = stats.getDepth();
+                    event.maxIntervalsPerNode = stats.getMaxIntervalsPerNode();
+                    event.duplicateRatio = stats.getDuplicateRatio();
+                    event.commit();
+                }
+                if (listener != null)
+                    listener.rebuilt(durationNanos, stats);
+            }
         }
     }
 
+    /**
+     * Compute the shape of the tree
+     * Will rebuild the tree if out of sync
+     *
+     * @return the number of nodes, depth and spread of intervals over the nodes
+     */
+    public IntervalTreeStats stats() {
+        build();
+        return IntervalTreeStats.of(head);
+    }
+
+    /**
+     * Attach a listener to be told about every rebuild, query and iterator step,
+     * replacing any previous one. Without a listener, and with the JFR events disabled,
+     * queries are not measured at all
+     *
+     * @param listener the listener, or null to detach
+     */
+    public void setListener(IntervalTreeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the attached listener, or null
+     */
+    public IntervalTreeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Cache the results of interval queries, so that repeating a query over an unchanged
+     * range is answered without searching the tree. A mutation drops only the cached
+     * results whose range it touches. Cached queries bypass the listener
+     *
+     * @param maxEntries the number of distinct ranges to keep, least recently used dropped first
+     */
+    public void enableCache(int maxEntries) {
+        enableCache(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Cache the results of interval queries, bounded by both the number of ranges and
+     * the number of intervals held, replacing any previous cache
+     *
+     * @param maxEntries   the number of distinct ranges to keep, least recently used dropped first
+     * @param maxIntervals the number of intervals the cached results may hold together
+     */
+    public void enableCache(int maxEntries, long maxIntervals) {
+        cache = new QueryCache<Type>(maxEntries, maxIntervals);
+    }
+
+    /**
+     * Stop caching and drop every cached result
+     */
+    public void disableCache() {
+        cache = null;
+    }
+
+    /**
+     * @return the statistics of the query cache, or null if it is not enabled
+     */
+    public QueryCacheStats getCacheStats() {
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * @return the cached result of an interval query, running and caching it on a miss
+     */
+    private List<Interval<Type>> cachedIntervals(long start, long end) {
+        List<Interval<Type>> result = cache.get(start, end);
+        if (result == null) {
+            result = new ArrayList<Interval<Type>>();
+            forEachIntersecting(start, end, new CollectingConsumer<Interval<Type>>(result));
+            cache.put(start, end, result);
+        }
+        return result;
+    }
+
+    private void invalidate(long start, long end) {
+        if (cache != null)
+            cache.invalidate(start, end);
+    }
+
+    /**
+     * Take an immutable snapshot of the tree laid out as flat primitive arrays,
+     * which answers the same queries with a much smaller footprint
+     * Will rebuild the tree if out of sync
+     *
+     * @return the snapshot, unaffected by later changes to this tree
+     */
+    public FrozenIntervalTree<Type> freeze() {
+        build();
+        return new FrozenIntervalTree<Type>(head);
+    }
+
     /**
      * @return the number of entries in the currently built interval tree
      */
@@ -230,6 +674,108 @@ public class IntervalTree<Type> implements Serializable {
         return intervalList.size();
     }
 
+    /**
+     * @return the head of the tree as of the last build
+     */
+    IntervalNode<Type> getHead() {
+        return head;
+    }
+
+    /**
+     * @return the sorted endpoints of the built tree, indexed on first use after each rebuild
+     */
+    private EndpointIndex endpointIndex() {
+        build();
+        if (endpoints == null)
+            endpoints = new EndpointIndex(intervalList);
+        return endpoints;
+    }
+
+    /**
+     * @return the intervals of the built tree ordered by start, then end, sorted on first use
+     * after each rebuild. Must not be modified
+     */
+    @SuppressWarnings("unchecked")
+    Interval<Type>[] startOrdered() {
+        build();
+        if (startOrdered == null) {
+            Interval<Type>[] sorted = intervalList.toArray(new Interval[intervalList.size()]);
+            Arrays.sort(sorted, IntervalJoin.BY_START);
+            startOrdered = sorted;
+        }
+        return startOrdered;
+    }
+
+    /**
+     * @return the overlap depth of the built tree, stepped on first use after each rebuild
+     */
+    private DepthIndex depthIndex() {
+        build();
+        if (depth == null)
+            depth = new DepthIndex(intervalList);
+        return depth;
+    }
+
+    /**
+     * @return the union of the intervals of the built tree, merged on first use after each rebuild
+     */
+    private CoverageIndex coverageIndex() {
+        Interval<Type>[] byStart = startOrdered();
+        if (coverage == null)
+            coverage = new CoverageIndex(byStart);
+        return coverage;
+    }
+
+    /**
+     * @return the intervals of the built tree ordered by descending end, then descending start,
+     * sorted on first use after each rebuild. Must not be modified
+     */
+    @SuppressWarnings("unchecked")
+    private Interval<Type>[] endOrdered() {
+        build();
+        if (endOrdered == null) {
+            Interval<Type>[] sorted = intervalList.toArray(new Interval[intervalList.size()]);
+            Arrays.sort(sorted, IntervalNode.END_DESCENDING);
+            endOrdered = sorted;
+        }
+        return endOrdered;
+    }
+
+    /**
+     * @param byStart intervals by ascending start
+     * @return the index of the first interval starting after time, or at time if inclusive
+     */
+    private static int firstStarting(Interval<?>[] byStart, long time, boolean inclusive) {
+        int from = 0;
+        int to = byStart.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            long start = byStart[middle].getStart();
+            if (start < time || (start == time && !inclusive))
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+
+    /**
+     * @param byEnd intervals by descending end
+     * @return the index of the first interval ending at or before time
+     */
+    private static int firstEndingAtOrBefore(Interval<?>[] byEnd, long time) {
+        int from = 0;
+        int to = byEnd.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (byEnd[middle].getEnd() > time)
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+
     @Override
     public String toString() {
         return nodeString(head, 0);
@@ -250,11 +796,69 @@ public class IntervalTree<Type> implements Serializable {
 
     public IntervalTreeIterator<Type> getIterator(long border, IteratorDirection direction) {
         build();
-        return new IntervalTreeIterator<Type>(border, head, direction);
+        IntervalTreeIterator<Type> iterator = new IntervalTreeIterator<Type>(border, head, direction);
+        iterator.setListener(listener);
+        return iterator;
     }
 
     public IntervalTreeIterator<Type> getIterator(Date border, IteratorDirection direction) {
         return getIterator(border.getTime(), direction);
     }
 
+    /**
+     * Create a spliterator over all intervals that splits along the nodes of the tree
+     * Will rebuild the tree if out of sync
+     *
+     * @return a sized spliterator over the intervals, in node order
+     */
+    public Spliterator<Interval<Type>> spliterator() {
+        build();
+        return new IntervalSpliterator<Type>(head);
+    }
+
+    /**
+     * Create a spliterator over the intervals intersecting [start, end)
+     * Will rebuild the tree if out of sync
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return a spliterator over the intervals that intersect target, in node order
+     */
+    public Spliterator<Interval<Type>> spliterator(long start, long end) {
+        build();
+        return new IntervalSpliterator<Type>(head, start, end);
+    }
+
+    /**
+     * @return a sequential stream of all intervals
+     */
+    public Stream<Interval<Type>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return a sequential stream of the intervals that intersect target
+     */
+    public Stream<Interval<Type>> stream(long start, long end) {
+        return StreamSupport.stream(spliterator(start, end), false);
+    }
+
+    /**
+     * @return a parallel stream of all intervals, split along the nodes of the tree
+     */
+    public Stream<Interval<Type>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return a parallel stream of the intervals that intersect target, split along the nodes of the tree
+     */
+    public Stream<Interval<Type>> parallelStream(long start, long end) {
+        return StreamSupport.stream(spliterator(start, end), true);
+    }
+
 }
@@ -0,0 +1,214 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact binary format for the intervals of a tree, in place of default Java serialization
+ *
+ * Only the intervals are written, sorted by start, never the nodes built from them:
+ * <pre>
+ * header    magic, version, interval count
+ * records   start as a varint delta from the previous start,
+ *           length (end - start) as a zigzag varint,
+ *           payload as written by the {@link PayloadSerializer}
+ * trailer   CRC32 of header and records
+ * </pre>
+ * Reading streams the records straight into a list and bulk builds the tree from it.
+ * Channels passed in are neither closed nor positioned beyond the bytes of one tree
+ * on writing; reading may buffer past the trailer
+ */
+public final class IntervalTreeCodec {
+
+    static final long MAGIC = 0x4956434f44454331L; // "IVCODEC1"
+    static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Comparator<Interval<?>> BY_START = new Comparator<Interval<?>>() {
+        @Override
+        public int compare(Interval<?> interval1, Interval<?> interval2) {
+            if (interval1.getStart() != interval2.getStart())
+                return interval1.getStart() < interval2.getStart() ? -1 : 1;
+            return Long.compare(interval1.getEnd(), interval2.getEnd());
+        }
+    };
+
+    private IntervalTreeCodec() {
+    }
+
+    /**
+     * @param tree       the tree whose intervals to write
+     * @param serializer writes the data of each interval
+     * @param file       the file to create or overwrite
+     * @throws IOException if the file cannot be written
+     */
+    public static <Type> void write(IntervalTree<Type> tree, PayloadSerializer<? super Type> serializer, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            write(tree, serializer, channel);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @param tree       the tree whose intervals to write
+     * @param serializer writes the data of each interval
+     * @param channel    the channel to write to, left open
+     * @throws IOException if the channel fails
+     */
+    public static <Type> void write(IntervalTree<Type> tree, PayloadSerializer<? super Type> serializer,
+                                    WritableByteChannel channel) throws IOException {
+        List<Interval<Type>> intervals = new ArrayList<Interval<Type>>(tree.listSize());
+        Iterator<Interval<Type>> iterator = tree.iterator();
+        while (iterator.hasNext())
+            intervals.add(iterator.next());
+        write(intervals, serializer, channel);
+    }
+
+    /**
+     * @param intervals  the intervals to write, in any order
+     * @param serializer writes the data of each interval
+     * @param channel    the channel to write to, left open
+     * @throws IOException if the channel fails
+     */
+    public static <Type> void write(Collection<Interval<Type>> intervals, PayloadSerializer<? super Type> serializer,
+                                    WritableByteChannel channel) throws IOException {
+        List<Interval<Type>> sorted = new ArrayList<Interval<Type>>(intervals);
+        Collections.sort(sorted, BY_START);
+
+        BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sorted.size());
+
+        long previousStart = 0;
+        for (Interval<Type> interval : sorted) {
+            writeVarLong(out, interval.getStart() - previousStart);
+            writeVarLong(out, zigzag(interval.getEnd() - interval.getStart()));
+            serializer.write(interval.getData(), out);
+            previousStart = interval.getStart();
+        }
+        out.flush();
+
+        // the checksum itself is written around the checked stream
+        new DataOutputStream(buffered).writeLong(crc.getValue());
+        buffered.flush();
+    }
+
+    /**
+     * @param file       the file written by {@link #write}
+     * @param serializer reads the data of each interval
+     * @return the tree, built from the intervals read
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public static <Type> IntervalTree<Type> read(Path file, PayloadSerializer<? extends Type> serializer) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return read(channel, serializer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @param channel    the channel to read from, left open
+     * @param serializer reads the data of each interval
+     * @return the tree, built from the intervals read
+     * @throws IOException if the channel fails or the data is corrupt
+     */
+    public static <Type> IntervalTree<Type> read(ReadableByteChannel channel, PayloadSerializer<? extends Type> serializer) throws IOException {
+        return new IntervalTree<Type>(readIntervals(channel, serializer));
+    }
+
+    /**
+     * @param channel    the channel to read from, left open
+     * @param serializer reads the data of each interval
+     * @return the intervals read, ordered by start
+     * @throws IOException if the channel fails or the data is corrupt
+     */
+    public static <Type> List<Interval<Type>> readIntervals(ReadableByteChannel channel,
+                                                            PayloadSerializer<? extends Type> serializer) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+
+        try {
+            if (in.readLong() != MAGIC)
+                throw new IOException("Not an interval tree snapshot, bad magic");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported interval tree snapshot version " + version);
+            int count = in.readInt();
+            if (count < 0)
+                throw new IOException("Corrupt interval tree snapshot, count " + count);
+
+            List<Interval<Type>> intervals = new ArrayList<Interval<Type>>(count);
+            long start = 0;
+            for (int i = 0; i < count; i++) {
+                start += readVarLong(in);
+                long end = start + unzigzag(readVarLong(in));
+                Type data = serializer.read(in);
+                intervals.add(new Interval<Type>(start, end, data));
+            }
+
+            long expected = new DataInputStream(buffered).readLong();
+            if (expected != crc.getValue())
+                throw new IOException("Corrupt interval tree snapshot, checksum mismatch");
+            return intervals;
+        } catch (EOFException e) {
+            throw new IOException("Truncated interval tree snapshot", e);
+        }
+    }
+
+    /**
+     * Write value as an unsigned varint, seven bits per byte, low bits first
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Read an unsigned varint written by {@link #writeVarLong}
+     */
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Map signed values to unsigned ones so that small magnitudes stay small
+     */
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,71 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events emitted by {@link IntervalTree}
+ *
+ * Queries check the cached event types first and only create an event while a recording
+ * enables it, so a query with events disabled allocates nothing for them
+ */
+final class IntervalTreeEvents {
+
+    static final EventType STAB = EventType.getEventType(Stab.class);
+    static final EventType RANGE_QUERY = EventType.getEventType(RangeQuery.class);
+
+    private IntervalTreeEvents() {
+    }
+
+    @Name("com.kg.smartfactory.IntervalTreeRebuild")
+    @Label("Interval Tree Rebuild")
+    @Category("Interval Tree")
+    @Description("A rebuild of an interval tree after it was changed")
+    static final class Rebuild extends Event {
+
+        @Label("Intervals")
+        int intervals;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Depth")
+        int depth;
+
+        @Label("Max Intervals Per Node")
+        int maxIntervalsPerNode;
+
+        @Label("Duplicate Ratio")
+        double duplicateRatio;
+    }
+
+    @Name("com.kg.smartfactory.IntervalTreeStab")
+    @Label("Interval Tree Stab")
+    @Category("Interval Tree")
+    @Description("A stabbing query on an interval tree")
+    @Threshold("1 ms")
+    static final class Stab extends Event {
+
+        @Label("Time")
+        long time;
+
+        @Label("Results")
+        int results;
+    }
+
+    @Name("com.kg.smartfactory.IntervalTreeRangeQuery")
+    @Label("Interval Tree Range Query")
+    @Category("Interval Tree")
+    @Description("An interval query on an interval tree")
+    @Threshold("1 ms")
+    static final class RangeQuery extends Event {
+
+        @Label("Start")
+        long start;
+
+        @Label("End")
+        long end;
+
+        @Label("Results")
+        int results;
+    }
+}
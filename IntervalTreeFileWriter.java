@@ -0,0 +1,131 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes a frozen interval tree into the file layout read by {@link MappedIntervalTree}
+ *
+ * Layout, little endian:
+ * <pre>
+ * header       magic, version, node count, interval count, section offsets
+ * centers      long[nodes]
+ * children     int[2 * nodes] as (left, right), -1 for none
+ * node offsets long[nodes + 1], the first interval record of each node
+ * intervals    (start, end, payload id) long triples in per-node start order
+ * end order    int[intervals], per-node record index relative to the node, by descending end
+ * </pre>
+ * Payloads are not written; the caller maps each one to an id or to an offset into its own side file
+ */
+public class IntervalTreeFileWriter {
+
+    static final long MAGIC = 0x4956545245453031L; // "IVTREE01"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int INTERVAL_RECORD_SIZE = 24;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private IntervalTreeFileWriter() {
+    }
+
+    /**
+     * @param tree      the tree to write, rebuilt first if out of sync
+     * @param payloadId maps the data of each interval to the id stored in the file
+     * @param file      the file to create or overwrite
+     * @throws IOException if the file cannot be written
+     */
+    public static <Type> void write(IntervalTree<Type> tree, ToLongFunction<? super Type> payloadId, Path file) throws IOException {
+        write(tree.freeze(), payloadId, file);
+    }
+
+    /**
+     * @param tree      the tree to write
+     * @param payloadId maps the data of each interval to the id stored in the file
+     * @param file      the file to create or overwrite
+     * @throws IOException if the file cannot be written
+     */
+    public static <Type> void write(FrozenIntervalTree<Type> tree, ToLongFunction<? super Type> payloadId, Path file) throws IOException {
+        long nodes = tree.nodeCount();
+        long intervals = tree.size();
+
+        long centersOffset = HEADER_SIZE;
+        long childrenOffset = centersOffset + 8 * nodes;
+        long nodeOffsetsOffset = childrenOffset + 8 * nodes;
+        long intervalsOffset = nodeOffsetsOffset + 8 * (nodes + 1);
+        long endOrderOffset = intervalsOffset + INTERVAL_RECORD_SIZE * intervals;
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putLong(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(0);
+            buffer.putLong(nodes);
+            buffer.putLong(intervals);
+            buffer.putLong(childrenOffset);
+            buffer.putLong(nodeOffsetsOffset);
+            buffer.putLong(intervalsOffset);
+            buffer.putLong(endOrderOffset);
+
+            for (long center : tree.centers())
+                buffer = putLong(channel, buffer, center);
+
+            int[] left = tree.leftChildren();
+            int[] right = tree.rightChildren();
+            for (int i = 0; i < nodes; i++) {
+                buffer = putInt(channel, buffer, left[i]);
+                buffer = putInt(channel, buffer, right[i]);
+            }
+
+            for (int offset : tree.nodeOffsets())
+                buffer = putLong(channel, buffer, offset);
+
+            long[] starts = tree.starts();
+            long[] ends = tree.ends();
+            for (int i = 0; i < intervals; i++) {
+                buffer = putLong(channel, buffer, starts[i]);
+                buffer = putLong(channel, buffer, ends[i]);
+                buffer = putLong(channel, buffer, payloadId.applyAsLong(tree.data(i)));
+            }
+
+            int[] nodeOffsets = tree.nodeOffsets();
+            int[] endOrder = tree.endOrder();
+            for (int node = 0; node < nodes; node++) {
+                for (int j = nodeOffsets[node]; j < nodeOffsets[node + 1]; j++)
+                    buffer = putInt(channel, buffer, endOrder[j] - nodeOffsets[node]);
+            }
+
+            flush(channel, buffer);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer putLong(FileChannel channel, ByteBuffer buffer, long value) throws IOException {
+        if (buffer.remaining() < 8)
+            flush(channel, buffer);
+        return buffer.putLong(value);
+    }
+
+    private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < 4)
+            flush(channel, buffer);
+        return buffer.putInt(value);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
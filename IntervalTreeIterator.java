@@ -1,72 +1,58 @@
 package com.kg.smartfactory.common.interval.tree;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
-
 import java.util.*;
 
+/**
+ * Walks the nodes of an interval tree in order from a border
+ *
+ * FORWARD visits the nodes left to right and returns the intervals starting at or after
+ * the border, each node's by ascending start. BACKWARD visits the nodes right to left
+ * and returns the intervals ending at or before the border, each node's by descending
+ * end. Subtrees that cannot hold a match are skipped.
+ *
+ * The walk keeps an explicit stack of pending nodes and a position in the current node's
+ * sorted array, so a step allocates nothing and costs amortized O(1). {@link #seek(long)}
+ * restarts the walk from a new border, reusing the iterator
+ */
 public class IntervalTreeIterator<T> implements Iterator<Interval<T>> {
 
-    private IteratorDirection direction;
-
-    private long leftBorder;
-    private long rightBorder;
+    private final IteratorDirection direction;
+    private final IntervalNode<T> head;
+    private long border;
 
-    private IntervalNode<T> currentNode;
-    private Interval<T> currentInterval;
-    private IntervalNode<T> currentParent;
+    private IntervalNode<T>[] stack;
+    private int depth;
 
-    private Iterator<Map.Entry<Interval<T>, Long>> intervalsMapIterator;
-    private long currentIntervalCount;
+    private Interval<T>[] currentIntervals;
+    private int position;
 
     private Interval<T> foundNextInterval;
 
-    private Set<IntervalNode> visitedNodes = Sets.newHashSet();
-
-
-    SortedMap<Interval<T>, Long> reversedIntervals = new TreeMap<Interval<T>, Long>(new Comparator<Interval<T>>() {
-        @Override
-        public int compare(Interval<T> interval1, Interval<T> interval2) {
-            if (interval1.getEnd() < interval2.getEnd()) {
-                return 1;
-            } else if (interval1.getEnd() > interval2.getEnd()) {
-                return -1;
-            } else if (interval1.getStart() < interval2.getStart()) {
-                return 1;
-            } else if (interval1.getStart() > interval2.getStart()) {
-                return -1;
-            } else if ((interval1.getData() != null) && (interval2.getData() != null)) {
-                return interval1.getData().toString().compareTo(interval2.getData().toString());
-            }
-            return 0;
-        }
-    });
+    private IntervalTreeListener listener;
 
+    @SuppressWarnings("unchecked")
     public IntervalTreeIterator(long border, IntervalNode<T> head, IteratorDirection direction) {
+        if (direction != IteratorDirection.FORWARD && direction != IteratorDirection.BACKWARD)
+            throw new IllegalStateException("Unknown direction:" + direction);
         this.direction = direction;
-        switch (direction) {
-            case BACKWARD: {
-                getLastIntervalInBorders(border, head);
-                break;
-            }
-            case FORWARD: {
-                getFirstIntervalInBorders(border, head);
-                break;
-            }
-            default: {
-                throw new IllegalStateException("Unknown direction:" + direction);
-            }
-        }
-    }
-
-    private void getLastIntervalInBorders(long rightBorder, IntervalNode<T> head) {
-        this.rightBorder = rightBorder; // эквивалент интервала включающего в себя границу
-        findRightMostInterval(head);
+        this.head = head;
+        this.stack = (IntervalNode<T>[]) new IntervalNode[16];
+        seek(border);
     }
 
-    private void getFirstIntervalInBorders(long leftBorder, IntervalNode<T> head) {
-        this.leftBorder = leftBorder; // эквивалент интервала включающего в себя границу
-        findLeftMostInterval(head);
+    /**
+     * Restart the walk from a new border, as if this iterator had just been created with it
+     *
+     * @param border the new border
+     */
+    public void seek(long border) {
+        this.border = border;
+        Arrays.fill(stack, 0, depth, null);
+        depth = 0;
+        currentIntervals = null;
+        position = 0;
+        foundNextInterval = null;
+        descend(head);
     }
 
     public boolean hasNext() {
@@ -77,6 +63,9 @@ public class IntervalTreeIterator<T> implements Iterator<Interval<T>> {
         return foundNextInterval != null;
     }
 
+    /**
+     * @return the next interval, or null once there are no more
+     */
     public Interval<T> next() {
         if (foundNextInterval != null) {
             Interval<T> result = foundNextInterval;
@@ -84,14 +73,34 @@ public class IntervalTreeIterator<T> implements Iterator<Interval<T>> {
             return result;
         }
 
-        if (IteratorDirection.BACKWARD.equals(direction)) {
-            return getPrevious();
-        } else if (IteratorDirection.FORWARD.equals(direction)) {
-            Interval<T> result = getNext();
-            return result;
+        while (true) {
+            if (currentIntervals != null && position < currentIntervals.length) {
+                if (listener != null)
+                    listener.iteratorStepped();
+                return currentIntervals[position++];
+            }
+            if (depth == 0)
+                return null;
+
+            IntervalNode<T> node = stack[--depth];
+            stack[depth] = null;
+            if (direction == IteratorDirection.FORWARD) {
+                descend(node.getRight());
+                currentIntervals = node.getStartOrdered();
+                position = firstStartingAtOrAfter(currentIntervals, border);
+            } else {
+                descend(node.getLeft());
+                currentIntervals = node.getEndOrdered();
+                position = firstEndingAtOrBefore(currentIntervals, border);
+            }
         }
+    }
 
-        throw new IllegalStateException("Unknown direction: " + direction);
+    /**
+     * @param listener told about every interval returned, or null
+     */
+    void setListener(IntervalTreeListener listener) {
+        this.listener = listener;
     }
 
     @Override
@@ -99,182 +108,68 @@ public class IntervalTreeIterator<T> implements Iterator<Interval<T>> {
         throw new UnsupportedOperationException();
     }
 
-    private Interval<T> getNext() {
-        while (true) {
-
-            if (currentIntervalCount > 0) {
-                currentIntervalCount--;
-                return currentInterval;
-            }
-
-            if (intervalsMapIterator != null) {
-                if (intervalsMapIterator.hasNext()) {
-                    Map.Entry<Interval<T>, Long> entry = intervalsMapIterator.next();
-                    Interval<T> interval = entry.getKey();
-                    if (interval.getStart() >= leftBorder) {
-                        currentInterval = interval;
-                        currentIntervalCount = entry.getValue();
-                    }
+    /**
+     * Push the path towards the first node to visit under node, skipping the nodes on the
+     * wrong side of the border together with the subtrees beyond them
+     */
+    private void descend(IntervalNode<T> node) {
+        while (node != null) {
+            if (direction == IteratorDirection.FORWARD) {
+                // a node centered before the border only holds intervals starting before it
+                if (node.getCenter() >= border) {
+                    push(node);
+                    node = node.getLeft();
                 } else {
-                    intervalsMapIterator = null;
+                    node = node.getRight();
                 }
-                continue;
-            } else if (currentNode.getRight() != null && currentNode.getRight().getCenter() < leftBorder) {
-                visitedNodes.add(currentNode);
-                currentNode = currentNode.getRight();
-                continue;
-            } else if (currentNode.getRight() != null && currentNode.getRight().getCenter() >= leftBorder) {
-                findLeftMostInterval(currentNode.getRight());
-                visitedNodes.add(currentNode);
-                continue;
             } else {
-                while ((currentParent != null) && (visitedNodes.contains(currentParent) || (currentParent.getCenter() < leftBorder))) {
-                    currentParent = currentParent.getParent();
-                }
-
-                if (currentParent != null) {
-                    currentNode = currentParent;
-                    currentParent = currentParent.getParent();
-                    Set<Map.Entry<Interval<T>, Long>> entries = currentNode.getIntervals().entrySet();
-                    intervalsMapIterator = entries.iterator();
-                    visitedNodes.add(currentNode);
-                    continue;
-                }
-            }
-
-            return null;
-        }
-    }
-
-    private Interval<T> getPrevious() {
-        while (true) {
-            if (currentIntervalCount > 0) {
-                currentIntervalCount--;
-                return currentInterval;
-            }
-            if (intervalsMapIterator != null) {
-                if (intervalsMapIterator.hasNext()) {
-                    Map.Entry<Interval<T>, Long> entry = intervalsMapIterator.next();
-                    Interval<T> interval = entry.getKey();
-                    if (interval.getEnd() <= rightBorder) {
-                        currentInterval = interval;
-                        currentIntervalCount = entry.getValue();
-                    }
+                if (node.getCenter() <= border) {
+                    push(node);
+                    node = node.getRight();
                 } else {
-                    intervalsMapIterator = null;
-                }
-                continue;
-            } else if (currentNode.getLeft() != null && currentNode.getLeft().getCenter() > rightBorder) {
-                visitedNodes.add(currentNode);
-                currentNode = currentNode.getLeft();
-                continue;
-            } else if (currentNode.getLeft() != null && currentNode.getLeft().getCenter() <= rightBorder) {
-                visitedNodes.add(currentNode);
-                findRightMostInterval(currentNode.getLeft());
-                continue;
-            } else {
-                while ((currentParent != null) && (visitedNodes.contains(currentParent) || (currentParent.getCenter() > rightBorder))) {
-                    currentParent = currentParent.getParent();
-                }
-                if ((currentParent != null)) {
-                    currentNode = currentParent;
-                    currentParent = currentParent.getParent();
-                    reversedIntervals.clear();
-                    reversedIntervals.putAll(currentNode.getIntervals());
-                    Set<Map.Entry<Interval<T>, Long>> entries = reversedIntervals.entrySet();
-                    intervalsMapIterator = entries.iterator();
-                    visitedNodes.add(currentNode);
-                    continue;
+                    node = node.getLeft();
                 }
             }
-
-            return null;
         }
     }
 
-    private void findRightMostInterval(IntervalNode<T> node) {
-        Queue<IntervalNode<T>> nodes = Lists.newLinkedList();
-        nodes.add(node);
-
-        while (!nodes.isEmpty()) {
-            currentNode = nodes.poll();
-
-            setCurrentParent(currentNode.getParent());
-
-            if (currentNode.getCenter() <= rightBorder) {
-                if (currentNode.getRight() != null) {
-                    nodes.add(currentNode.getRight());
-                    continue;
-                }
-
-                getLastIntervalOnCurrentNode();
-            }
-        }
+    private void push(IntervalNode<T> node) {
+        if (depth == stack.length)
+            stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = node;
     }
 
-    private void findLeftMostInterval(IntervalNode<T> node) {
-        Queue<IntervalNode<T>> nodes = Lists.newLinkedList();
-        nodes.add(node);
-
-        while (nodes.size() > 0) {
-            currentNode = nodes.poll();
-
-            setCurrentParent(currentNode.getParent());
-
-            if (currentNode.getCenter() >= leftBorder) {
-                if (currentNode.getLeft() != null) {
-                    nodes.add(currentNode.getLeft());
-                    continue;
-                }
-                getFirstIntervalOnCurrentNode();
-            }
+    /**
+     * @param intervals intervals by ascending start
+     * @return the index of the first interval starting at or after time
+     */
+    private static int firstStartingAtOrAfter(Interval<?>[] intervals, long time) {
+        int from = 0;
+        int to = intervals.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (intervals[middle].getStart() < time)
+                from = middle + 1;
+            else
+                to = middle;
         }
+        return from;
     }
 
-    private void setCurrentParent(IntervalNode<T> currentParent) {
-        this.currentParent = currentParent;
-    }
-
-    private void setCurrentIntervalCount(long currentIntervalCount) {
-        this.currentIntervalCount = currentIntervalCount;
-    }
-
-    private void setIntervalsMapIterator(Iterator<Map.Entry<Interval<T>, Long>> intervalListIterator) {
-        this.intervalsMapIterator = intervalListIterator;
-    }
-
-    private void getFirstIntervalOnCurrentNode() {
-        Set<Map.Entry<Interval<T>, Long>> entries = currentNode.getIntervals().entrySet();
-        Iterator<Map.Entry<Interval<T>, Long>> iterator = entries.iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<Interval<T>, Long> entry = iterator.next();
-            Interval<T> interval = entry.getKey();
-
-            if (interval.getStart() >= leftBorder) {
-                setCurrentIntervalCount(entry.getValue());
-                setIntervalsMapIterator(iterator);
-                currentInterval = interval;
-                break;
-            }
+    /**
+     * @param intervals intervals by descending end
+     * @return the index of the first interval ending at or before time
+     */
+    private static int firstEndingAtOrBefore(Interval<?>[] intervals, long time) {
+        int from = 0;
+        int to = intervals.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (intervals[middle].getEnd() > time)
+                from = middle + 1;
+            else
+                to = middle;
         }
+        return from;
     }
-
-    private void getLastIntervalOnCurrentNode() {
-        reversedIntervals.clear();
-        reversedIntervals.putAll(currentNode.getIntervals());
-        Set<Map.Entry<Interval<T>, Long>> entries = reversedIntervals.entrySet();
-        Iterator<Map.Entry<Interval<T>, Long>> iterator = entries.iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<Interval<T>, Long> entry = iterator.next();
-
-            Interval<T> interval = entry.getKey();
-            if (interval.getEnd() <= rightBorder) {
-                setCurrentIntervalCount(entry.getValue());
-                setIntervalsMapIterator(iterator);
-                currentInterval = interval;
-                break;
-            }
-        }
-    }
-
 }
@@ -0,0 +1,34 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * Receives measurements from an {@link IntervalTree} it is attached to
+ *
+ * Called synchronously on the thread doing the work, so implementations must be cheap
+ * and, if the tree is shared between threads, thread-safe. {@link IntervalTreeMetrics}
+ * is a ready made implementation
+ */
+public interface IntervalTreeListener {
+
+    /**
+     * @param durationNanos how long the rebuild took
+     * @param stats         the shape of the rebuilt tree
+     */
+    void rebuilt(long durationNanos, IntervalTreeStats stats);
+
+    /**
+     * @param durationNanos how long the stabbing query took, excluding any rebuild
+     * @param results       the number of intervals found
+     */
+    void stabbed(long durationNanos, int results);
+
+    /**
+     * @param durationNanos how long the interval query took, excluding any rebuild
+     * @param results       the number of intervals found
+     */
+    void rangeQueried(long durationNanos, int results);
+
+    /**
+     * Called for every interval an iterator of the tree returns
+     */
+    void iteratorStepped();
+}
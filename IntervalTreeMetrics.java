@@ -0,0 +1,107 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link IntervalTreeListener} that keeps counters and latency histograms,
+ * safe to share between trees and threads
+ */
+public class IntervalTreeMetrics implements IntervalTreeListener {
+
+    private final LatencyHistogram rebuilds = new LatencyHistogram();
+    private final LatencyHistogram stabs = new LatencyHistogram();
+    private final LatencyHistogram rangeQueries = new LatencyHistogram();
+    private final LongAdder stabResults = new LongAdder();
+    private final LongAdder rangeQueryResults = new LongAdder();
+    private final LongAdder iteratorSteps = new LongAdder();
+
+    private volatile IntervalTreeStats lastStats;
+
+    public void rebuilt(long durationNanos, IntervalTreeStats stats) {
+        rebuilds.record(durationNanos);
+        lastStats = stats;
+    }
+
+    public void stabbed(long durationNanos, int results) {
+        stabs.record(durationNanos);
+        stabResults.add(results);
+    }
+
+    public void rangeQueried(long durationNanos, int results) {
+        rangeQueries.record(durationNanos);
+        rangeQueryResults.add(results);
+    }
+
+    public void iteratorStepped() {
+        iteratorSteps.increment();
+    }
+
+    /**
+     * @return the durations of all rebuilds, whose count is the number of rebuilds
+     */
+    public LatencyHistogram getRebuilds() {
+        return rebuilds;
+    }
+
+    /**
+     * @return the durations of all stabbing queries
+     */
+    public LatencyHistogram getStabs() {
+        return stabs;
+    }
+
+    /**
+     * @return the durations of all interval queries
+     */
+    public LatencyHistogram getRangeQueries() {
+        return rangeQueries;
+    }
+
+    /**
+     * @return the total number of intervals found by stabbing queries
+     */
+    public long getStabResults() {
+        return stabResults.sum();
+    }
+
+    /**
+     * @return the total number of intervals found by interval queries
+     */
+    public long getRangeQueryResults() {
+        return rangeQueryResults.sum();
+    }
+
+    /**
+     * @return the total number of intervals returned by iterators
+     */
+    public long getIteratorSteps() {
+        return iteratorSteps.sum();
+    }
+
+    /**
+     * @return the shape of the tree as of the latest rebuild, null before the first one
+     */
+    public IntervalTreeStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        rebuilds.reset();
+        stabs.reset();
+        rangeQueries.reset();
+        stabResults.reset();
+        rangeQueryResults.reset();
+        iteratorSteps.reset();
+        lastStats = null;
+    }
+
+    @Override
+    public String toString() {
+        return "rebuilds: " + rebuilds + "\nstabs: " + stabs + " results=" + getStabResults()
+                + "\nrange queries: " + rangeQueries + " results=" + getRangeQueryResults()
+                + "\niterator steps: " + getIteratorSteps() + "\nlast stats: " + lastStats;
+    }
+}
@@ -0,0 +1,87 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * The shape of a built {@link IntervalTree}
+ */
+public final class IntervalTreeStats {
+
+    private final int intervals;
+    private final int nodes;
+    private final int depth;
+    private final int maxIntervalsPerNode;
+    private final int distinctIntervals;
+
+    private IntervalTreeStats(int intervals, int nodes, int depth, int maxIntervalsPerNode, int distinctIntervals) {
+        this.intervals = intervals;
+        this.nodes = nodes;
+        this.depth = depth;
+        this.maxIntervalsPerNode = maxIntervalsPerNode;
+        this.distinctIntervals = distinctIntervals;
+    }
+
+    /**
+     * @param head the head of a built tree
+     * @return the statistics of the tree under head
+     */
+    static IntervalTreeStats of(IntervalNode<?> head) {
+        int[] totals = new int[5];
+        collect(head, 1, totals);
+        return new IntervalTreeStats(totals[0], totals[1], totals[2], totals[3], totals[4]);
+    }
+
+    private static void collect(IntervalNode<?> node, int level, int[] totals) {
+        while (node != null) {
+            int held = node.getStartOrdered().length;
+            totals[0] += held;
+            totals[1]++;
+            totals[2] = Math.max(totals[2], level);
+            totals[3] = Math.max(totals[3], held);
+            totals[4] += node.getIntervals().size();
+
+            collect(node.getLeft(), level + 1, totals);
+            node = node.getRight();
+            level++;
+        }
+    }
+
+    /**
+     * @return the number of intervals, counting duplicates
+     */
+    public int getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of nodes on the longest path from the head, 0 if there is none
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the largest number of intervals held by one node
+     */
+    public int getMaxIntervalsPerNode() {
+        return maxIntervalsPerNode;
+    }
+
+    /**
+     * @return the fraction of intervals that duplicate another one held by the same node, from 0 to 1
+     */
+    public double getDuplicateRatio() {
+        return intervals == 0 ? 0 : 1 - (double) distinctIntervals / intervals;
+    }
+
+    @Override
+    public String toString() {
+        return "intervals=" + intervals + " nodes=" + nodes + " depth=" + depth
+                + " maxIntervalsPerNode=" + maxIntervalsPerNode + " duplicateRatio=" + getDuplicateRatio();
+    }
+}
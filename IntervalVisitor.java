@@ -0,0 +1,17 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * Receives query results from trees that do not keep {@link Interval} objects,
+ * such as the {@link FrozenIntervalTree}
+ *
+ * @param <Type> the type of data associated with the intervals
+ */
+public interface IntervalVisitor<Type> {
+
+    /**
+     * @param start the start of the matching interval
+     * @param end   the end of the matching interval
+     * @param data  the data associated with the matching interval
+     */
+    void visit(long start, long end, Type data);
+}
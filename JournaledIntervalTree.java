@@ -0,0 +1,572 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An interval tree whose mutations survive restarts
+ *
+ * Every add, remove and clear is appended to a journal in a directory of its own.
+ * Appends are buffered in memory and written and forced to disk together by a background
+ * flush, so many mutations share one fsync; {@link #sync()} forces them at once. Once the
+ * journal outgrows a threshold the mutating thread copies the intervals, and the copy is
+ * written in the background as an {@link IntervalTreeCodec} snapshot, which replaces the
+ * journal. Mutations made meanwhile are held back for the journal following that snapshot.
+ * Opening the directory again loads the latest snapshot and replays the journal written
+ * after it.
+ *
+ * Snapshots and journals carry a generation in their names: generation g holds the state
+ * of snapshot-g plus journal-g. A new snapshot is renamed into place atomically before
+ * the files of the previous generation are deleted, so a crash at any point recovers one
+ * consistent generation. A torn record at the end of the journal, from a crash during a
+ * write, is dropped along with everything after it.
+ *
+ * Like {@link IntervalTree} this is not safe for concurrent mutation
+ *
+ * @param <Type> the type of objects to associate
+ */
+public class JournaledIntervalTree<Type> extends IntervalTree<Type> implements Closeable {
+
+    public static final long DEFAULT_FLUSH_MILLIS = 10;
+    public static final long DEFAULT_SNAPSHOT_BYTES = 64L << 20;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    // length and checksum before every record body
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final transient Path directory;
+    private final transient PayloadSerializer<Type> serializer;
+    private final transient long snapshotThresholdBytes;
+
+    private final transient Object journalLock = new Object();
+    private final transient Object flushLock = new Object();
+
+    // guarded by journalLock
+    private transient ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private transient IOException failure;
+    // while a snapshot is being written: the intervals it holds, and the records before it not yet flushed
+    private transient List<Interval<Type>> snapshotIntervals;
+    private transient ByteArrayOutputStream snapshotPending;
+
+    // guarded by flushLock
+    private transient FileChannel journal;
+    private transient long generation;
+
+    // written under flushLock, read without it by the mutating thread
+    private final transient AtomicLong journalBytes = new AtomicLong();
+
+    private final transient ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final transient DataOutputStream record = new DataOutputStream(recordBytes);
+    private final transient CRC32 crc = new CRC32();
+    private final transient ScheduledExecutorService executor;
+
+    private final transient Runnable snapshotTask = new Runnable() {
+        public void run() {
+            synchronized (flushLock) {
+                try {
+                    finishSnapshot();
+                    flush();
+                } catch (IOException e) {
+                    // kept in failure, reported by the next mutation
+                }
+            }
+        }
+    };
+
+    private JournaledIntervalTree(Path directory, PayloadSerializer<Type> serializer, long snapshotThresholdBytes,
+                                  List<Interval<Type>> intervals) {
+        super(intervals);
+        this.directory = directory;
+        this.serializer = serializer;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "interval-tree-journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Open or create a journaled tree with the default flush interval and snapshot threshold
+     *
+     * @param directory  the directory holding the snapshots and journal, created if missing
+     * @param serializer writes and reads the data of each interval
+     * @return the tree, recovered to its last flushed state
+     * @throws IOException if the directory cannot be read or written
+     */
+    public static <Type> JournaledIntervalTree<Type> open(Path directory, PayloadSerializer<Type> serializer) throws IOException {
+        return open(directory, serializer, DEFAULT_FLUSH_MILLIS, DEFAULT_SNAPSHOT_BYTES);
+    }
+
+    /**
+     * Open or create a journaled tree
+     *
+     * @param directory              the directory holding the snapshots and journal, created if missing
+     * @param serializer             writes and reads the data of each interval
+     * @param flushIntervalMillis    how long a mutation may stay in memory before it is forced to disk
+     * @param snapshotThresholdBytes the journal size beyond which a snapshot replaces it
+     * @return the tree, recovered to its last flushed state
+     * @throws IOException if the directory cannot be read or written
+     */
+    public static <Type> JournaledIntervalTree<Type> open(Path directory, PayloadSerializer<Type> serializer,
+                                                          long flushIntervalMillis, long snapshotThresholdBytes) throws IOException {
+        if (flushIntervalMillis <= 0)
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushIntervalMillis);
+        Files.createDirectories(directory);
+
+        long generation = latestSnapshot(directory);
+        List<Interval<Type>> intervals = generation > 0
+                ? readSnapshot(snapshotFile(directory, generation), serializer)
+                : new ArrayList<Interval<Type>>();
+        long journalBytes = replay(journalFile(directory, generation), serializer, intervals);
+
+        final JournaledIntervalTree<Type> tree = new JournaledIntervalTree<Type>(directory, serializer,
+                snapshotThresholdBytes, intervals);
+        tree.generation = generation;
+        tree.journalBytes.set(journalBytes);
+        tree.journal = FileChannel.open(journalFile(directory, generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        // drops a torn tail left by a crash
+        tree.journal.truncate(journalBytes);
+        tree.journal.position(journalBytes);
+        deleteStale(directory, generation);
+
+        tree.executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                tree.flushQuietly();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        return tree;
+    }
+
+    @Override
+    public void addInterval(Interval<Type> interval) {
+        append(ADD, interval.getStart(), interval.getEnd(), interval.getData());
+        super.addInterval(interval);
+        snapshotIfDue();
+    }
+
+    @Override
+    public void addInterval(long begin, long end, Type data) {
+        append(ADD, begin, end, data);
+        super.addInterval(begin, end, data);
+        snapshotIfDue();
+    }
+
+    @Override
+    public void removeInterval(Interval<Type> interval) {
+        append(REMOVE, interval.getStart(), interval.getEnd(), interval.getData());
+        super.removeInterval(interval);
+        snapshotIfDue();
+    }
+
+    @Override
+    public void removeIntervals(Collection<Interval<Type>> intervals) {
+        for (Interval<Type> interval : intervals)
+            append(REMOVE, interval.getStart(), interval.getEnd(), interval.getData());
+        super.removeIntervals(intervals);
+        snapshotIfDue();
+    }
+
+    @Override
+    public void clear() {
+        append(CLEAR, 0, 0, null);
+        super.clear();
+        snapshotIfDue();
+    }
+
+    /**
+     * Write and force every mutation made so far to disk
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    public void sync() throws IOException {
+        synchronized (flushLock) {
+            finishSnapshot();
+            flush();
+        }
+    }
+
+    /**
+     * Write the whole tree as a new snapshot and start an empty journal after it
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        List<Interval<Type>> intervals = copyIntervals();
+        synchronized (flushLock) {
+            finishSnapshot();
+            flush();
+            writeSnapshot(intervals);
+        }
+    }
+
+    /**
+     * @return the generation of the current snapshot and journal, 0 before the first snapshot
+     */
+    public long getGeneration() {
+        synchronized (flushLock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Flush all mutations and release the journal, after which the tree must not be mutated
+     *
+     * @throws IOException if the last mutations cannot be written
+     */
+    public void close() throws IOException {
+        // lets a running flush or snapshot complete rather than interrupting its writes
+        executor.shutdown();
+        synchronized (flushLock) {
+            try {
+                finishSnapshot();
+                flush();
+            } finally {
+                journal.close();
+            }
+        }
+    }
+
+    private void append(byte operation, long start, long end, Type data) {
+        synchronized (journalLock) {
+            if (failure != null)
+                throw new UncheckedIOException("Journal write failed", failure);
+            try {
+                recordBytes.reset();
+                record.writeByte(operation);
+                if (operation != CLEAR) {
+                    record.writeLong(start);
+                    record.writeLong(end);
+                    serializer.write(data, record);
+                }
+                record.flush();
+
+                crc.reset();
+                crc.update(recordBytes.toByteArray());
+                DataOutputStream out = new DataOutputStream(pending);
+                out.writeInt(recordBytes.size());
+                out.writeInt((int) crc.getValue());
+                recordBytes.writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot journal interval", e);
+            }
+        }
+    }
+
+    /**
+     * Must hold flushLock
+     */
+    private void flush() throws IOException {
+        ByteArrayOutputStream batch;
+        synchronized (journalLock) {
+            if (failure != null)
+                throw failure;
+            if (snapshotPending != null) {
+                batch = snapshotPending;
+                snapshotPending = null;
+            } else if (snapshotIntervals != null) {
+                // the records after a snapshot being written belong to the journal following it
+                return;
+            } else {
+                batch = pending;
+                pending = new ByteArrayOutputStream(Math.max(32, batch.size()));
+            }
+            if (batch.size() == 0)
+                return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            while (buffer.hasRemaining())
+                journal.write(buffer);
+            journal.force(false);
+            journalBytes.addAndGet(batch.size());
+        } catch (IOException e) {
+            synchronized (journalLock) {
+                failure = e;
+            }
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        synchronized (flushLock) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // kept in failure, reported by the next mutation
+            }
+        }
+    }
+
+    /**
+     * Hand a snapshot to the background thread once the journal outgrows the threshold,
+     * cutting the pending records at the copy taken here between two mutations
+     */
+    private void snapshotIfDue() {
+        long pendingBytes;
+        synchronized (journalLock) {
+            if (snapshotIntervals != null)
+                return;
+            pendingBytes = pending.size();
+        }
+        if (journalBytes.get() + pendingBytes < snapshotThresholdBytes)
+            return;
+
+        List<Interval<Type>> intervals = copyIntervals();
+        synchronized (journalLock) {
+            snapshotIntervals = intervals;
+            snapshotPending = pending;
+            pending = new ByteArrayOutputStream(Math.max(32, pending.size()));
+        }
+        executor.execute(snapshotTask);
+    }
+
+    /**
+     * Write the snapshot handed to the background thread, if it has not been written yet
+     * Must hold flushLock
+     */
+    private void finishSnapshot() throws IOException {
+        List<Interval<Type>> intervals;
+        synchronized (journalLock) {
+            if (snapshotIntervals == null)
+                return;
+            intervals = snapshotIntervals;
+        }
+        try {
+            flush();
+            writeSnapshot(intervals);
+        } catch (IOException e) {
+            synchronized (journalLock) {
+                failure = e;
+            }
+            throw e;
+        }
+        synchronized (journalLock) {
+            snapshotIntervals = null;
+        }
+    }
+
+    /**
+     * Write intervals as the snapshot of the next generation and start an empty journal after it
+     * Must hold flushLock, with every record up to intervals flushed
+     */
+    private void writeSnapshot(List<Interval<Type>> intervals) throws IOException {
+        long next = generation + 1;
+        Path temporary = directory.resolve(SNAPSHOT_PREFIX + next + TEMPORARY_SUFFIX);
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            IntervalTreeCodec.write(intervals, serializer, channel);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        Files.move(temporary, snapshotFile(directory, next), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+
+        // the new snapshot is in place, the previous generation is now garbage
+        FileChannel previous = journal;
+        journal = FileChannel.open(journalFile(directory, next), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        journalBytes.set(0);
+        generation = next;
+        previous.close();
+        deleteStale(directory, next);
+    }
+
+    private List<Interval<Type>> copyIntervals() {
+        List<Interval<Type>> intervals = new ArrayList<Interval<Type>>(listSize());
+        Iterator<Interval<Type>> iterator = iterator();
+        while (iterator.hasNext())
+            intervals.add(iterator.next());
+        return intervals;
+    }
+
+    private void forceDirectory() {
+        // not every platform can open a directory to force it, the rename is atomic regardless
+        try {
+            FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+        }
+    }
+
+    /**
+     * Replay the records of a journal onto intervals, stopping at the first torn or corrupt one
+     *
+     * @return the length of the journal up to the end of the last valid record
+     */
+    private static <Type> long replay(Path file, PayloadSerializer<Type> serializer,
+                                      List<Interval<Type>> intervals) throws IOException {
+        if (!Files.exists(file))
+            return 0;
+
+        // replayed as a multiset so that each removal is a hash lookup rather than a list scan
+        Map<Interval<Type>, int[]> counts = new LinkedHashMap<Interval<Type>, int[]>();
+        for (Interval<Type> interval : intervals)
+            increment(counts, interval);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        try {
+            long valid = 0;
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > 1 << 30)
+                        break;
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum)
+                    break;
+
+                apply(body, serializer, counts);
+                valid += RECORD_HEADER_SIZE + length;
+            }
+
+            intervals.clear();
+            for (Map.Entry<Interval<Type>, int[]> entry : counts.entrySet()) {
+                for (int i = 0; i < entry.getValue()[0]; i++)
+                    intervals.add(entry.getKey());
+            }
+            return valid;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static <Type> void apply(byte[] body, PayloadSerializer<Type> serializer,
+                                     Map<Interval<Type>, int[]> counts) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte operation = in.readByte();
+        switch (operation) {
+            case ADD:
+                increment(counts, new Interval<Type>(in.readLong(), in.readLong(), serializer.read(in)));
+                break;
+            case REMOVE:
+                Interval<Type> interval = new Interval<Type>(in.readLong(), in.readLong(), serializer.read(in));
+                int[] count = counts.get(interval);
+                if (count != null && --count[0] == 0)
+                    counts.remove(interval);
+                break;
+            case CLEAR:
+                counts.clear();
+                break;
+            default:
+                throw new IOException("Unknown journal operation " + operation);
+        }
+    }
+
+    private static <Type> void increment(Map<Interval<Type>, int[]> counts, Interval<Type> interval) {
+        int[] count = counts.get(interval);
+        if (count == null)
+            counts.put(interval, new int[]{1});
+        else
+            count[0]++;
+    }
+
+    private static <Type> List<Interval<Type>> readSnapshot(Path file, PayloadSerializer<Type> serializer) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return IntervalTreeCodec.readIntervals(channel, serializer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the highest generation with a complete snapshot, 0 if there is none
+     */
+    private static long latestSnapshot(Path directory) throws IOException {
+        long latest = 0;
+        DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SUFFIX);
+        try {
+            for (Path file : files) {
+                long generation = generationOf(file, SNAPSHOT_PREFIX);
+                if (generation > latest)
+                    latest = generation;
+            }
+        } finally {
+            files.close();
+        }
+        return latest;
+    }
+
+    /**
+     * Delete the snapshots and journals of other generations and unfinished snapshots
+     */
+    private static void deleteStale(Path directory, long generation) throws IOException {
+        DirectoryStream<Path> files = Files.newDirectoryStream(directory);
+        try {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX) && name.startsWith(SNAPSHOT_PREFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith(SNAPSHOT_PREFIX) || name.startsWith(JOURNAL_PREFIX)) {
+                    long fileGeneration = generationOf(file, name.startsWith(SNAPSHOT_PREFIX) ? SNAPSHOT_PREFIX : JOURNAL_PREFIX);
+                    if (fileGeneration >= 0 && fileGeneration != generation)
+                        Files.deleteIfExists(file);
+                }
+            }
+        } finally {
+            files.close();
+        }
+    }
+
+    /**
+     * @return the generation in the name of a snapshot or journal file, -1 if it is not one
+     */
+    private static long generationOf(Path file, String prefix) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(SUFFIX))
+            return -1;
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Path snapshotFile(Path directory, long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation + SUFFIX);
+    }
+
+    private static Path journalFile(Path directory, long generation) {
+        return directory.resolve(JOURNAL_PREFIX + generation + SUFFIX);
+    }
+}
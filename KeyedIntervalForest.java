@@ -0,0 +1,517 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.*;
+
+/**
+ * Many independent interval timelines, one per key such as a machine or line, in place of
+ * a map of separate {@link IntervalTree}s
+ *
+ * Each key keeps its intervals in growable parallel primitive arrays rather than a list of
+ * {@link Interval} objects, sorted by start and queried in place as an implicit balanced
+ * tree annotated with the greatest end below every position. A key is re-sorted lazily,
+ * on the first query of that key after it changed, independently of every other key; only
+ * the intervals added since its last sort are sorted, then merged into the rest.
+ *
+ * To find the keys active in a window without visiting the others, a shared index holds
+ * the merged union of every key's intervals, laid out like a timeline whose data are the
+ * timelines of the keys. Keys changed since that index was
+ * built are checked one by one instead, until more than {@link #STALE_KEYS} of them and
+ * more than 1/{@link #STALE_FRACTION} of all keys have changed; the index is then dropped
+ * and rebuilt in full by the next such query
+ *
+ * Empty intervals contain no time and intersect the windows strictly around them, as in
+ * {@link IntervalTree}. Not thread safe
+ *
+ * @param <Key>  the type of the keys
+ * @param <Type> the type of objects to associate
+ */
+public class KeyedIntervalForest<Key, Type> {
+
+    static final int STALE_KEYS = 64;
+    static final int STALE_FRACTION = 16;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final Map<Key, Timeline<Key, Type>> timelines;
+    private int size;
+
+    // the union of every key's intervals as of the last reindex, and the timelines changed since
+    private Timeline<Key, Timeline<Key, Type>> activity;
+    private final Set<Timeline<Key, Type>> stale;
+
+    public KeyedIntervalForest() {
+        timelines = new HashMap<Key, Timeline<Key, Type>>();
+        size = 0;
+        activity = null;
+        stale = new HashSet<Timeline<Key, Type>>();
+    }
+
+    /**
+     * Add an interval to the timeline of a key
+     * Will not rebuild that key until its next query or call to build
+     *
+     * @param key   the key to add to
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data to associate
+     */
+    public void addInterval(Key key, long begin, long end, Type data) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        if (timeline == null) {
+            timeline = new Timeline<Key, Type>(key);
+            timelines.put(key, timeline);
+        }
+        timeline.add(begin, end, data);
+        size++;
+        touch(timeline);
+    }
+
+    /**
+     * Add an interval to the timeline of a key
+     * Will not rebuild that key until its next query or call to build
+     *
+     * @param key   the key to add to
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data to associate
+     */
+    public void addInterval(Key key, Date begin, Date end, Type data) {
+        addInterval(key, begin.getTime(), end.getTime(), data);
+    }
+
+    /**
+     * Remove one occurrence of an interval from the timeline of a key
+     * Will not rebuild that key until its next query or call to build
+     *
+     * @param key   the key to remove from
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data associated, compared by equals
+     * @return true if such an interval was found
+     */
+    public boolean removeInterval(Key key, long begin, long end, Type data) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        if (timeline == null || !timeline.remove(begin, end, data))
+            return false;
+        size--;
+        touch(timeline);
+        if (timeline.size == 0)
+            timelines.remove(key);
+        return true;
+    }
+
+    /**
+     * Remove the whole timeline of a key
+     *
+     * @param key the key to remove
+     * @return the number of intervals removed
+     */
+    public int removeKey(Key key) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        if (timeline == null)
+            return 0;
+        int removed = timeline.size;
+        size -= removed;
+        touch(timeline);
+        timelines.remove(key);
+        return removed;
+    }
+
+    /**
+     * Remove every timeline
+     */
+    public void clear() {
+        timelines.clear();
+        size = 0;
+        activity = null;
+        stale.clear();
+    }
+
+    /**
+     * Perform a stabbing query on the timeline of a key, returning the associated data
+     * Will rebuild that key if out of sync
+     *
+     * @param key  the key to query
+     * @param time the time to stab
+     * @return the data associated with all intervals of the key that contain time
+     */
+    public List<Type> get(Key key, long time) {
+        List<Type> result = new ArrayList<Type>();
+        forEachContaining(key, time, new FrozenIntervalTree.DataCollector<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query on the timeline of a key, returning the associated data
+     * Will rebuild that key if out of sync
+     *
+     * @param key   the key to query
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals of the key that intersect target
+     */
+    public List<Type> get(Key key, long start, long end) {
+        List<Type> result = new ArrayList<Type>();
+        forEachIntersecting(key, start, end, new FrozenIntervalTree.DataCollector<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform a stabbing query on the timeline of a key without allocating
+     * Will rebuild that key if out of sync
+     *
+     * @param key     the key to query
+     * @param time    the time to stab
+     * @param visitor receives each interval of the key that contains time
+     */
+    public void forEachContaining(Key key, long time, IntervalVisitor<? super Type> visitor) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        if (timeline == null)
+            return;
+        timeline.build();
+        timeline.containing(0, timeline.size, time, visitor);
+    }
+
+    /**
+     * Perform an interval query on the timeline of a key without allocating
+     * Will rebuild that key if out of sync
+     *
+     * @param key     the key to query
+     * @param start   the start of the interval to check
+     * @param end     the end of the interval to check
+     * @param visitor receives each interval of the key that intersects target
+     */
+    public void forEachIntersecting(Key key, long start, long end, IntervalVisitor<? super Type> visitor) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        if (timeline == null)
+            return;
+        timeline.build();
+        timeline.intersecting(0, timeline.size, start, end, visitor);
+    }
+
+    /**
+     * Find the keys active within a window
+     * Will rebuild the changed keys, or the cross-key index if too many changed
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return every key with at least one interval that intersects target
+     */
+    public Set<Key> getKeys(long start, long end) {
+        if (activity == null)
+            reindex();
+
+        final Set<Key> result = new HashSet<Key>();
+        activity.intersecting(0, activity.size, start, end, new IntervalVisitor<Timeline<Key, Type>>() {
+            public void visit(long start, long end, Timeline<Key, Type> timeline) {
+                if (!stale.contains(timeline))
+                    result.add(timeline.key);
+            }
+        });
+        for (Timeline<Key, Type> timeline : stale) {
+            // a removed key leaves its timeline behind here
+            if (timelines.get(timeline.key) != timeline)
+                continue;
+            timeline.build();
+            if (timeline.intersects(0, timeline.size, start, end))
+                result.add(timeline.key);
+        }
+        return result;
+    }
+
+    /**
+     * Rebuild the timeline of one key, if it changed since its last build
+     *
+     * @param key the key to rebuild
+     */
+    public void build(Key key) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        if (timeline != null)
+            timeline.build();
+    }
+
+    /**
+     * Rebuild the timelines of every key that changed since its last build
+     */
+    public void build() {
+        for (Timeline<Key, Type> timeline : timelines.values())
+            timeline.build();
+    }
+
+    /**
+     * @param key the key to look up
+     * @return true if the timeline of the key has not changed since its last build
+     */
+    public boolean inSync(Key key) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        return timeline == null || !timeline.dirty;
+    }
+
+    /**
+     * @return the keys holding at least one interval
+     */
+    public Set<Key> keySet() {
+        return Collections.unmodifiableSet(timelines.keySet());
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the number of intervals of the key, counting duplicates
+     */
+    public int size(Key key) {
+        Timeline<Key, Type> timeline = timelines.get(key);
+        return timeline == null ? 0 : timeline.size;
+    }
+
+    /**
+     * @return the number of intervals of all keys, counting duplicates
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Note a change to a timeline, giving up on the cross-key index once too many changed
+     */
+    private void touch(Timeline<Key, Type> timeline) {
+        if (activity == null)
+            return;
+        stale.add(timeline);
+        if (stale.size() > STALE_KEYS && stale.size() > timelines.size() / STALE_FRACTION) {
+            activity = null;
+            stale.clear();
+        }
+    }
+
+    /**
+     * Rebuild the cross-key index from the merged intervals of every key
+     */
+    private void reindex() {
+        Timeline<Key, Timeline<Key, Type>> segments = new Timeline<Key, Timeline<Key, Type>>(null);
+        for (Timeline<Key, Type> timeline : timelines.values()) {
+            timeline.build();
+            timeline.merge(segments);
+        }
+        segments.build();
+        activity = segments;
+        stale.clear();
+    }
+
+    /**
+     * The intervals of one key: as of its last build sorted by start, then end, followed by
+     * any added since. An interval removed from the sorted part is only marked, keeping the
+     * rest in place, and dropped by the next build.
+     *
+     * Once built, position (from + to) / 2 is the root of the implicit tree over [from, to),
+     * with [from, root) and [root + 1, to) its subtrees
+     */
+    private static final class Timeline<Key, Type> {
+
+        // marks a removed interval in the data array until the next build
+        private static final Object REMOVED = new Object();
+
+        final Key key;
+
+        long[] starts;
+        long[] ends;
+        Object[] data;
+        // maxEnds[i] is the greatest end in the implicit subtree rooted at i, valid while not dirty
+        long[] maxEnds;
+        // the number of intervals, the number of array slots used, and how many of those are sorted
+        int size;
+        int filled;
+        int sorted;
+
+        boolean dirty;
+
+        Timeline(Key key) {
+            this.key = key;
+            starts = new long[INITIAL_CAPACITY];
+            ends = new long[INITIAL_CAPACITY];
+            data = new Object[INITIAL_CAPACITY];
+        }
+
+        void add(long start, long end, Type value) {
+            if (filled == starts.length) {
+                int capacity = filled + (filled >> 1);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                data = Arrays.copyOf(data, capacity);
+            }
+            starts[filled] = start;
+            ends[filled] = end;
+            data[filled] = value;
+            filled++;
+            size++;
+            dirty = true;
+        }
+
+        /**
+         * Find the interval by binary search among the sorted ones, else among those added
+         * since the last build
+         */
+        boolean remove(long start, long end, Type value) {
+            for (int i = EndpointIndex.lowerBound(starts, 0, sorted, start); i < sorted && starts[i] == start; i++) {
+                if (ends[i] == end && data[i] != REMOVED && equal(value, data[i])) {
+                    data[i] = REMOVED;
+                    size--;
+                    dirty = true;
+                    return true;
+                }
+            }
+            for (int i = sorted; i < filled; i++) {
+                if (starts[i] == start && ends[i] == end && equal(value, data[i])) {
+                    // the added intervals are not sorted yet, fill the hole with the last one
+                    filled--;
+                    starts[i] = starts[filled];
+                    ends[i] = ends[filled];
+                    data[i] = data[filled];
+                    data[filled] = null;
+                    size--;
+                    dirty = true;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Drop the removed intervals, sort the added ones into the rest and annotate the
+         * implicit tree, if anything changed
+         */
+        @SuppressWarnings("unchecked")
+        void build() {
+            if (!dirty)
+                return;
+            int kept = 0;
+            for (int i = 0; i < sorted; i++) {
+                if (data[i] == REMOVED)
+                    continue;
+                starts[kept] = starts[i];
+                ends[kept] = ends[i];
+                data[kept] = data[i];
+                kept++;
+            }
+
+            List<Interval<Type>> added = new ArrayList<Interval<Type>>(filled - sorted);
+            for (int i = sorted; i < filled; i++)
+                added.add(new Interval<Type>(starts[i], ends[i], (Type) data[i]));
+            Collections.sort(added, IntervalJoin.BY_START);
+
+            // merge from the back, which never overwrites a kept interval not yet moved
+            int i = kept - 1;
+            int j = added.size() - 1;
+            for (int k = size - 1; j >= 0; k--) {
+                Interval<Type> interval = added.get(j);
+                if (i >= 0 && (starts[i] > interval.getStart()
+                        || starts[i] == interval.getStart() && ends[i] > interval.getEnd())) {
+                    starts[k] = starts[i];
+                    ends[k] = ends[i];
+                    data[k] = data[i];
+                    i--;
+                } else {
+                    starts[k] = interval.getStart();
+                    ends[k] = interval.getEnd();
+                    data[k] = interval.getData();
+                    j--;
+                }
+            }
+            Arrays.fill(data, size, filled, null);
+            filled = size;
+            sorted = size;
+
+            if (maxEnds == null || maxEnds.length < starts.length)
+                maxEnds = new long[starts.length];
+            annotate(0, size);
+            dirty = false;
+        }
+
+        /**
+         * @return the greatest end in [from, to), recorded at the root of every subtree within
+         */
+        private long annotate(int from, int to) {
+            if (from >= to)
+                return Long.MIN_VALUE;
+            int root = (from + to) >>> 1;
+            long maxEnd = Math.max(ends[root], Math.max(annotate(from, root), annotate(root + 1, to)));
+            maxEnds[root] = maxEnd;
+            return maxEnd;
+        }
+
+        /**
+         * Visit the intervals of [from, to) containing time by ascending start, valid while not dirty
+         */
+        @SuppressWarnings("unchecked")
+        void containing(int from, int to, long time, IntervalVisitor<? super Type> visitor) {
+            while (from < to) {
+                int root = (from + to) >>> 1;
+                if (maxEnds[root] <= time)
+                    return;
+                containing(from, root, time, visitor);
+                // everything from the root on starts after time
+                if (starts[root] > time)
+                    return;
+                if (ends[root] > time)
+                    visitor.visit(starts[root], ends[root], (Type) data[root]);
+                from = root + 1;
+            }
+        }
+
+        /**
+         * Visit the intervals of [from, to) intersecting [start, end) by ascending start, valid while not dirty
+         */
+        @SuppressWarnings("unchecked")
+        void intersecting(int from, int to, long start, long end, IntervalVisitor<? super Type> visitor) {
+            while (from < to) {
+                int root = (from + to) >>> 1;
+                if (maxEnds[root] <= start)
+                    return;
+                intersecting(from, root, start, end, visitor);
+                if (starts[root] >= end)
+                    return;
+                if (ends[root] > start)
+                    visitor.visit(starts[root], ends[root], (Type) data[root]);
+                from = root + 1;
+            }
+        }
+
+        /**
+         * @return true if an interval of [from, to) intersects [start, end), valid while not dirty
+         */
+        boolean intersects(int from, int to, long start, long end) {
+            while (from < to) {
+                int root = (from + to) >>> 1;
+                if (maxEnds[root] <= start)
+                    return false;
+                if (starts[root] >= end) {
+                    to = root;
+                    continue;
+                }
+                // the left subtree all starts before end too, so any interval there ending after start matches
+                if (ends[root] > start || (from < root && maxEnds[(from + root) >>> 1] > start))
+                    return true;
+                from = root + 1;
+            }
+            return false;
+        }
+
+        /**
+         * Add the segments covered by the intervals, overlapping ones merged, valid while not
+         * dirty. Touching ones are kept apart, or an empty window at the seam would match
+         */
+        void merge(Timeline<Key, Timeline<Key, Type>> segments) {
+            int i = 0;
+            while (i < size) {
+                long start = starts[i];
+                long end = ends[i];
+                for (i++; i < size && starts[i] < end; i++)
+                    end = Math.max(end, ends[i]);
+                segments.add(start, end, this);
+            }
+        }
+
+        private static boolean equal(Object value, Object other) {
+            return value == null ? other == null : value.equals(other);
+        }
+    }
+}
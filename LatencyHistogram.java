@@ -0,0 +1,110 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A lock-free histogram of durations in power of two buckets of nanoseconds,
+ * cheap enough to record on every query
+ *
+ * Percentiles are reported as the upper bound of the bucket they fall in,
+ * so they are accurate to within a factor of two
+ */
+public final class LatencyHistogram {
+
+    private final LongAdder[] buckets = new LongAdder[64];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(new LongBinaryOperator() {
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    }, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * @param nanos the duration to record, negative durations counting as 0
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        buckets[nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return the number of durations recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all durations recorded
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @return the longest duration recorded, 0 if none
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return the mean duration recorded, 0 if none
+     */
+    public double getMeanNanos() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getTotalNanos() / n;
+    }
+
+    /**
+     * @param percentile the percentile wanted, from 0 to 100
+     * @return a duration at least as long as that percentile of the durations recorded, 0 if none
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank))
+                return i == 63 ? Long.MAX_VALUE : Math.min((1L << (i + 1)) - 1, getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Forget every duration recorded so far
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets)
+            bucket.reset();
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + (long) getMeanNanos() + "ns p50=" + getPercentileNanos(50)
+                + "ns p99=" + getPercentileNanos(99) + "ns max=" + getMaxNanos() + "ns";
+    }
+}
@@ -0,0 +1,217 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Queries a tree file written by {@link IntervalTreeFileWriter} in place through memory mapping
+ *
+ * Opening only maps the file and checks its header, nothing is deserialized, so the index
+ * lives in the page cache rather than the heap. Files above 2GB are mapped as several
+ * overlapping regions. Instances are immutable and may be queried from any thread
+ */
+public class MappedIntervalTree implements Closeable {
+
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+    // lets a value starting in the last bytes of a region be read from that region alone
+    private static final int REGION_OVERLAP = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+
+    private final long nodeCount;
+    private final long intervalCount;
+    private final long childrenOffset;
+    private final long nodeOffsetsOffset;
+    private final long intervalsOffset;
+    private final long endOrderOffset;
+
+    private MappedIntervalTree(FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        long size = channel.size();
+        if (size < IntervalTreeFileWriter.HEADER_SIZE)
+            throw new IOException("Not an interval tree file, size " + size);
+
+        int regionCount = (int) ((size + REGION_MASK) >>> REGION_SHIFT);
+        regions = new MappedByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            long position = (long) i << REGION_SHIFT;
+            long length = Math.min(size - position, (1L << REGION_SHIFT) + REGION_OVERLAP);
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (getLong(0) != IntervalTreeFileWriter.MAGIC)
+            throw new IOException("Not an interval tree file, bad magic");
+        int version = getInt(8);
+        if (version != IntervalTreeFileWriter.VERSION)
+            throw new IOException("Unsupported interval tree file version " + version);
+
+        nodeCount = getLong(16);
+        intervalCount = getLong(24);
+        childrenOffset = getLong(32);
+        nodeOffsetsOffset = getLong(40);
+        intervalsOffset = getLong(48);
+        endOrderOffset = getLong(56);
+
+        if (endOrderOffset + 4 * intervalCount > size)
+            throw new IOException("Truncated interval tree file");
+    }
+
+    /**
+     * Map a tree file for querying
+     *
+     * @param file the file written by {@link IntervalTreeFileWriter}
+     * @return the mapped tree
+     * @throws IOException if the file cannot be mapped or is not a tree file
+     */
+    public static MappedIntervalTree open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedIntervalTree(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Perform a stabbing query
+     *
+     * @param time    the time to stab
+     * @param visitor receives each interval that contains time
+     */
+    public void forEachContaining(long time, IntervalIdVisitor visitor) {
+        long node = nodeCount > 0 ? 0 : -1;
+        while (node >= 0) {
+            long from = nodeOffset(node);
+            long to = nodeOffset(node + 1);
+            long center = center(node);
+            if (time < center) {
+                for (long i = from; i < to; i++) {
+                    long record = intervalsOffset + i * IntervalTreeFileWriter.INTERVAL_RECORD_SIZE;
+                    long start = getLong(record);
+                    if (start > time)
+                        break;
+                    long end = getLong(record + 8);
+                    if (end > time)
+                        visitor.visit(start, end, getLong(record + 16));
+                }
+                node = leftChild(node);
+            } else {
+                for (long j = from; j < to; j++) {
+                    long record = intervalsOffset + (from + endOrder(j)) * IntervalTreeFileWriter.INTERVAL_RECORD_SIZE;
+                    long end = getLong(record + 8);
+                    if (end <= time)
+                        break;
+                    long start = getLong(record);
+                    if (start <= time)
+                        visitor.visit(start, end, getLong(record + 16));
+                }
+                node = time > center ? rightChild(node) : -1;
+            }
+        }
+    }
+
+    /**
+     * Perform an interval query
+     *
+     * @param start   the start of the interval to check
+     * @param end     the end of the interval to check
+     * @param visitor receives each interval that intersects target
+     */
+    public void forEachIntersecting(long start, long end, IntervalIdVisitor visitor) {
+        if (nodeCount > 0)
+            query(0, start, end, visitor);
+    }
+
+    private void query(long node, long start, long end, IntervalIdVisitor visitor) {
+        long from = nodeOffset(node);
+        long to = nodeOffset(node + 1);
+        long center = center(node);
+        if (start < center) {
+            for (long i = from; i < to; i++) {
+                long record = intervalsOffset + i * IntervalTreeFileWriter.INTERVAL_RECORD_SIZE;
+                long intervalStart = getLong(record);
+                if (intervalStart >= end)
+                    break;
+                long intervalEnd = getLong(record + 8);
+                if (intervalEnd > start)
+                    visitor.visit(intervalStart, intervalEnd, getLong(record + 16));
+            }
+        } else {
+            for (long j = from; j < to; j++) {
+                long record = intervalsOffset + (from + endOrder(j)) * IntervalTreeFileWriter.INTERVAL_RECORD_SIZE;
+                long intervalEnd = getLong(record + 8);
+                if (intervalEnd <= start)
+                    break;
+                long intervalStart = getLong(record);
+                if (intervalStart < end)
+                    visitor.visit(intervalStart, intervalEnd, getLong(record + 16));
+            }
+        }
+
+        long left = leftChild(node);
+        long right = rightChild(node);
+        if (start < center && left >= 0)
+            query(left, start, end, visitor);
+        if (end > center && right >= 0)
+            query(right, start, end, visitor);
+    }
+
+    /**
+     * @return the number of intervals in the file, counting duplicates
+     */
+    public long size() {
+        return intervalCount;
+    }
+
+    /**
+     * @return the number of nodes in the file
+     */
+    public long nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Close the file; the mapping itself is released once this object is collected
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long center(long node) {
+        return getLong(IntervalTreeFileWriter.HEADER_SIZE + 8 * node);
+    }
+
+    private long leftChild(long node) {
+        return getInt(childrenOffset + 8 * node);
+    }
+
+    private long rightChild(long node) {
+        return getInt(childrenOffset + 8 * node + 4);
+    }
+
+    private long nodeOffset(long node) {
+        return getLong(nodeOffsetsOffset + 8 * node);
+    }
+
+    private long endOrder(long slot) {
+        return getInt(endOrderOffset + 4 * slot);
+    }
+
+    private long getLong(long position) {
+        return regions[(int) (position >>> REGION_SHIFT)].getLong((int) (position & REGION_MASK));
+    }
+
+    private int getInt(long position) {
+        return regions[(int) (position >>> REGION_SHIFT)].getInt((int) (position & REGION_MASK));
+    }
+}
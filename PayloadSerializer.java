@@ -0,0 +1,27 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads the data associated with intervals for {@link IntervalTreeCodec}
+ *
+ * @param <Type> the type of data associated with the intervals
+ */
+public interface PayloadSerializer<Type> {
+
+    /**
+     * @param data the data to write, possibly null
+     * @param out  the stream to write it to
+     * @throws IOException if the stream fails
+     */
+    void write(Type data, DataOutput out) throws IOException;
+
+    /**
+     * @param in the stream to read from, positioned where {@link #write} started
+     * @return the data read back
+     * @throws IOException if the stream fails or holds no valid payload
+     */
+    Type read(DataInput in) throws IOException;
+}
@@ -0,0 +1,116 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.*;
+
+/**
+ * A bounded cache of interval query results keyed by the queried range, evicting
+ * the least recently used entries once it holds too many entries or intervals
+ *
+ * A mutation only invalidates the entries whose range the mutated interval intersects;
+ * every other cached result is still exactly what the query would return
+ *
+ * @param <Type> the type of data being stored
+ */
+final class QueryCache<Type> {
+
+    private final int maxEntries;
+    private final long maxIntervals;
+    private final LinkedHashMap<Key, List<Interval<Type>>> entries;
+    private long cachedIntervals;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    QueryCache(int maxEntries, long maxIntervals) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Cache must hold at least one entry: " + maxEntries);
+        this.maxEntries = maxEntries;
+        this.maxIntervals = maxIntervals;
+        this.entries = new LinkedHashMap<Key, List<Interval<Type>>>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the cached result for [start, end), or null on a miss
+     */
+    List<Interval<Type>> get(long start, long end) {
+        List<Interval<Type>> result = entries.get(new Key(start, end));
+        if (result == null)
+            misses++;
+        else
+            hits++;
+        return result;
+    }
+
+    /**
+     * Cache the result for [start, end) unless it alone is larger than the cache may hold
+     */
+    void put(long start, long end, List<Interval<Type>> result) {
+        if (result.size() > maxIntervals)
+            return;
+        List<Interval<Type>> previous = entries.put(new Key(start, end), result);
+        if (previous != null)
+            cachedIntervals -= previous.size();
+        cachedIntervals += result.size();
+
+        Iterator<List<Interval<Type>>> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || cachedIntervals > maxIntervals) {
+            cachedIntervals -= eldest.next().size();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drop every entry whose range the interval [start, end) intersects
+     */
+    void invalidate(long start, long end) {
+        Iterator<Map.Entry<Key, List<Interval<Type>>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, List<Interval<Type>>> entry = iterator.next();
+            Key key = entry.getKey();
+            // the same test the queries apply to each interval
+            if (end > key.start && start < key.end) {
+                cachedIntervals -= entry.getValue().size();
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        cachedIntervals = 0;
+    }
+
+    QueryCacheStats stats() {
+        return new QueryCacheStats(hits, misses, evictions, invalidations, entries.size(), cachedIntervals);
+    }
+
+    private static final class Key {
+
+        final long start;
+        final long end;
+
+        Key(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return start == key.start && end == key.end;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (start ^ (start >>> 32));
+            return 31 * result + (int) (end ^ (end >>> 32));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kg.smartfactory.common.interval.tree;
+
+/**
+ * The effectiveness of an {@link IntervalTree}'s query cache
+ */
+public final class QueryCacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int entries;
+    private final long intervals;
+
+    QueryCacheStats(long hits, long misses, long evictions, long invalidations, int entries, long intervals) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.intervals = intervals;
+    }
+
+    /**
+     * @return the number of queries answered from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of queries that had to run against the tree
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of queries answered from the cache, 0 if there were none
+     */
+    public double getHitRatio() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * @return the number of entries dropped to stay within the bounds
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of entries dropped because a mutation touched their range
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return the number of results currently cached
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the number of intervals held by the cached results
+     */
+    public long getIntervals() {
+        return intervals;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions
+                + " invalidations=" + invalidations + " entries=" + entries + " intervals=" + intervals;
+    }
+}
@@ -0,0 +1,351 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * An interval tree partitioned along the time axis into fixed width buckets,
+ * each backed by its own {@link IntervalTree} and lock
+ *
+ * Inserts only lock the buckets they touch, rebuilds of dirty buckets run in parallel,
+ * and queries only visit buckets overlapping the queried time. An interval spanning
+ * several buckets is stored in each of them and reported only from the bucket holding
+ * the later of its own start and the query start, so it is never returned twice.
+ * Intervals spanning more than maxSpanBuckets buckets go to a shared overflow tree
+ * instead, which queries only lock while it holds intervals. A bucket emptied by removals
+ * is dropped
+ *
+ * Inserts and removals share a lock that {@link #clear()} takes exclusively, so an interval
+ * spanning several buckets is never cleared from only some of them
+ *
+ * Consumers passed to the queries run while a bucket is locked and must not call back
+ * into this tree
+ *
+ * @param <Type> the type of objects to associate
+ */
+public class ShardedIntervalTree<Type> {
+
+    private final long bucketWidth;
+    private final int maxSpanBuckets;
+    private final ExecutorService executor;
+
+    private final ConcurrentSkipListMap<Long, IntervalTree<Type>> shards;
+    // held shared by inserts and removals, exclusively by clear
+    private final ReadWriteLock clearLock = new ReentrantReadWriteLock();
+    private final IntervalTree<Type> overflow;
+    // the size of the overflow tree, written under its lock and read without it
+    private volatile int overflowSize;
+
+    /**
+     * @param bucketWidth    the length of time covered by each bucket
+     * @param maxSpanBuckets the most buckets an interval is copied into before it goes to the overflow tree
+     */
+    public ShardedIntervalTree(long bucketWidth, int maxSpanBuckets) {
+        this(bucketWidth, maxSpanBuckets, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param bucketWidth    the length of time covered by each bucket
+     * @param maxSpanBuckets the most buckets an interval is copied into before it goes to the overflow tree
+     * @param executor       runs the bucket rebuilds of {@link #build()}
+     */
+    public ShardedIntervalTree(long bucketWidth, int maxSpanBuckets, ExecutorService executor) {
+        if (bucketWidth <= 0)
+            throw new IllegalArgumentException("Bucket width must be positive: " + bucketWidth);
+        if (maxSpanBuckets < 1)
+            throw new IllegalArgumentException("Max span must be at least one bucket: " + maxSpanBuckets);
+        this.bucketWidth = bucketWidth;
+        this.maxSpanBuckets = maxSpanBuckets;
+        this.executor = executor;
+        this.shards = new ConcurrentSkipListMap<Long, IntervalTree<Type>>();
+        this.overflow = new IntervalTree<Type>();
+    }
+
+    /**
+     * Perform a stabbing query, returning the associated data
+     * Will rebuild the touched buckets if out of sync
+     *
+     * @param time the time to stab
+     * @return the data associated with all intervals that contain time
+     */
+    public List<Type> get(long time) {
+        List<Type> result = new ArrayList<Type>();
+        forEachContaining(time, new DataCollectingConsumer<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform a stabbing query, returning the interval objects
+     * Will rebuild the touched buckets if out of sync
+     *
+     * @param time the time to stab
+     * @return all intervals that contain time
+     */
+    public List<Interval<Type>> getIntervals(long time) {
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        forEachContaining(time, new CollectingConsumer<Interval<Type>>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query, returning the associated data
+     * Will rebuild the touched buckets if out of sync
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals that intersect target
+     */
+    public List<Type> get(long start, long end) {
+        List<Type> result = new ArrayList<Type>();
+        forEachIntersecting(start, end, new DataCollectingConsumer<Type>(result));
+        return result;
+    }
+
+    /**
+     * Perform an interval query, returning the interval objects
+     * Will rebuild the touched buckets if out of sync
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return all intervals that intersect target
+     */
+    public List<Interval<Type>> getIntervals(long start, long end) {
+        List<Interval<Type>> result = new ArrayList<Interval<Type>>();
+        forEachIntersecting(start, end, new CollectingConsumer<Interval<Type>>(result));
+        return result;
+    }
+
+    /**
+     * Perform a stabbing query, visiting only the bucket holding time and the overflow tree
+     *
+     * @param time     the time to stab
+     * @param consumer receives each interval that contains time
+     */
+    public void forEachContaining(long time, Consumer<? super Interval<Type>> consumer) {
+        IntervalTree<Type> shard = shards.get(bucketOf(time));
+        if (shard != null) {
+            synchronized (shard) {
+                shard.forEachContaining(time, consumer);
+            }
+        }
+        if (overflowSize == 0)
+            return;
+        synchronized (overflow) {
+            overflow.forEachContaining(time, consumer);
+        }
+    }
+
+    /**
+     * Perform an interval query, visiting only the buckets overlapping target and the overflow tree
+     *
+     * @param start    the start of the interval to check
+     * @param end      the end of the interval to check
+     * @param consumer receives each interval that intersects target
+     */
+    public void forEachIntersecting(long start, long end, Consumer<? super Interval<Type>> consumer) {
+        long first = bucketOf(start);
+        long last = Math.max(first, bucketOf(end - 1));
+        for (Map.Entry<Long, IntervalTree<Type>> entry : shards.subMap(first, true, last, true).entrySet()) {
+            IntervalTree<Type> shard = entry.getValue();
+            synchronized (shard) {
+                shard.forEachIntersecting(start, end, new OwnedByBucket(entry.getKey(), start, consumer));
+            }
+        }
+        if (overflowSize == 0)
+            return;
+        synchronized (overflow) {
+            overflow.forEachIntersecting(start, end, consumer);
+        }
+    }
+
+    /**
+     * Add an interval object to every bucket it overlaps, or to the overflow tree when it spans too many
+     * Will not rebuild the buckets until the next query or call to build
+     *
+     * @param interval the interval object to add
+     */
+    public void addInterval(Interval<Type> interval) {
+        long first = bucketOf(interval.getStart());
+        long last = lastBucketOf(interval);
+        clearLock.readLock().lock();
+        try {
+            if (last - first >= maxSpanBuckets) {
+                synchronized (overflow) {
+                    overflow.addInterval(interval);
+                    overflowSize = overflow.listSize();
+                }
+                return;
+            }
+
+            for (long bucket = first; bucket <= last; bucket++)
+                addToBucket(bucket, interval);
+        } finally {
+            clearLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add an interval object to every bucket it overlaps, or to the overflow tree when it spans too many
+     * Will not rebuild the buckets until the next query or call to build
+     *
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data to associate
+     */
+    public void addInterval(long begin, long end, Type data) {
+        addInterval(new Interval<Type>(begin, end, data));
+    }
+
+    /**
+     * Remove an interval object from every bucket it was added to
+     * Will not rebuild the buckets until the next query or call to build
+     *
+     * @param interval the interval object to remove
+     */
+    public void removeInterval(Interval<Type> interval) {
+        long first = bucketOf(interval.getStart());
+        long last = lastBucketOf(interval);
+        clearLock.readLock().lock();
+        try {
+            if (last - first >= maxSpanBuckets) {
+                synchronized (overflow) {
+                    overflow.removeInterval(interval);
+                    overflowSize = overflow.listSize();
+                }
+                return;
+            }
+
+            for (long bucket = first; bucket <= last; bucket++) {
+                IntervalTree<Type> shard = shards.get(bucket);
+                if (shard == null)
+                    continue;
+                synchronized (shard) {
+                    shard.removeInterval(interval);
+                    // dropped under its lock, so an insert holding the lock next sees it is gone
+                    if (shard.listSize() == 0)
+                        shards.remove(bucket, shard);
+                }
+            }
+        } finally {
+            clearLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all intervals and buckets, waiting for inserts and removals in progress to finish
+     */
+    public void clear() {
+        clearLock.writeLock().lock();
+        try {
+            shards.clear();
+            synchronized (overflow) {
+                overflow.clear();
+                overflowSize = 0;
+            }
+        } finally {
+            clearLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild every out of sync bucket in parallel, blocking until all are done
+     */
+    public void build() {
+        List<Callable<Void>> rebuilds = new ArrayList<Callable<Void>>();
+        for (final IntervalTree<Type> shard : shards.values()) {
+            rebuilds.add(new Callable<Void>() {
+                public Void call() {
+                    synchronized (shard) {
+                        shard.build();
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> rebuild : executor.invokeAll(rebuilds))
+                rebuild.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Bucket rebuild failed", e.getCause());
+        }
+
+        synchronized (overflow) {
+            overflow.build();
+        }
+    }
+
+    /**
+     * @return the number of buckets holding intervals, not counting the overflow tree
+     */
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @return the length of time covered by each bucket
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Add to the tree of a bucket, creating it if missing, or again if it is dropped as empty first
+     */
+    private void addToBucket(long bucket, Interval<Type> interval) {
+        while (true) {
+            IntervalTree<Type> shard = shards.get(bucket);
+            if (shard == null) {
+                IntervalTree<Type> created = new IntervalTree<Type>();
+                shard = shards.putIfAbsent(bucket, created);
+                if (shard == null)
+                    shard = created;
+            }
+            synchronized (shard) {
+                if (shards.get(bucket) == shard) {
+                    shard.addInterval(interval);
+                    return;
+                }
+            }
+        }
+    }
+
+    private long bucketOf(long time) {
+        return Math.floorDiv(time, bucketWidth);
+    }
+
+    /**
+     * @return the bucket holding the last instant of interval, or its start bucket when it is empty
+     */
+    private long lastBucketOf(Interval<?> interval) {
+        if (interval.getEnd() <= interval.getStart())
+            return bucketOf(interval.getStart());
+        return bucketOf(interval.getEnd() - 1);
+    }
+
+    /**
+     * Passes on only the intervals this bucket is responsible for reporting
+     */
+    private class OwnedByBucket implements Consumer<Interval<Type>> {
+
+        private final long bucket;
+        private final long queryStart;
+        private final Consumer<? super Interval<Type>> consumer;
+
+        OwnedByBucket(long bucket, long queryStart, Consumer<? super Interval<Type>> consumer) {
+            this.bucket = bucket;
+            this.queryStart = queryStart;
+            this.consumer = consumer;
+        }
+
+        public void accept(Interval<Type> interval) {
+            if (bucketOf(Math.max(interval.getStart(), queryStart)) == bucket)
+                consumer.accept(interval);
+        }
+    }
+}
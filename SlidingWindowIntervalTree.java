@@ -0,0 +1,195 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A streaming interval tree that only keeps intervals ending after a watermark
+ *
+ * Intervals are held in a {@link BalancedIntervalTree} and their handles, in parallel,
+ * in a heap ordered by end. Advancing the watermark pops every interval ending at or
+ * before it and removes it from the tree by handle, each in O(log n), so expiry never
+ * rebuilds anything.
+ * The watermark only moves forward, either explicitly or, given a retention, to the
+ * latest start seen minus that retention. Queries always reflect the current window
+ *
+ * @param <Type> the type of objects to associate
+ */
+public class SlidingWindowIntervalTree<Type> {
+
+    private static final Comparator<IntervalHandle<?>> BY_END = new Comparator<IntervalHandle<?>>() {
+        @Override
+        public int compare(IntervalHandle<?> handle1, IntervalHandle<?> handle2) {
+            return Long.compare(handle1.getEnd(), handle2.getEnd());
+        }
+    };
+
+    private final BalancedIntervalTree<Type> tree;
+    private final PriorityQueue<IntervalHandle<Type>> expiry;
+    private final long retention;
+    private long watermark;
+
+    /**
+     * Instantiate a window whose watermark is only moved by {@link #advanceWatermark(long)}
+     */
+    public SlidingWindowIntervalTree() {
+        this(-1);
+    }
+
+    /**
+     * Instantiate a window that keeps the intervals ending within retention of the latest start added
+     *
+     * @param retention how far behind the latest start the watermark follows, or a negative value
+     *                  to only move it by {@link #advanceWatermark(long)}
+     */
+    public SlidingWindowIntervalTree(long retention) {
+        this.tree = new BalancedIntervalTree<Type>();
+        this.expiry = new PriorityQueue<IntervalHandle<Type>>(11, BY_END);
+        this.retention = retention;
+        this.watermark = Long.MIN_VALUE;
+    }
+
+    /**
+     * Add an interval to the window, advancing the watermark when a retention is set
+     *
+     * @param interval the interval object to add
+     * @return false if the interval already ended at or before the watermark and was dropped
+     */
+    public boolean addInterval(Interval<Type> interval) {
+        if (retention >= 0 && interval.getStart() > Long.MIN_VALUE + retention)
+            advanceWatermark(interval.getStart() - retention);
+        if (interval.getEnd() <= watermark)
+            return false;
+
+        expiry.add(tree.addInterval(interval));
+        return true;
+    }
+
+    /**
+     * Add an interval to the window, advancing the watermark when a retention is set
+     *
+     * @param begin the beginning of the interval
+     * @param end   the end of the interval
+     * @param data  the data to associate
+     * @return false if the interval already ended at or before the watermark and was dropped
+     */
+    public boolean addInterval(long begin, long end, Type data) {
+        return addInterval(new Interval<Type>(begin, end, data));
+    }
+
+    /**
+     * Remove an interval before it expires
+     *
+     * @param interval the interval object to remove
+     * @return true if an equal interval was found and removed
+     */
+    public boolean removeInterval(Interval<Type> interval) {
+        // the heap entry is left behind and skipped once it expires
+        return tree.removeInterval(interval);
+    }
+
+    /**
+     * Move the watermark forward, evicting every interval that ends at or before it
+     * Does nothing if watermark is not ahead of the current one
+     *
+     * @param watermark the new watermark
+     * @return the number of intervals evicted
+     */
+    public int advanceWatermark(long watermark) {
+        if (watermark <= this.watermark)
+            return 0;
+        this.watermark = watermark;
+
+        int evicted = 0;
+        while (!expiry.isEmpty() && expiry.peek().getEnd() <= watermark) {
+            if (tree.remove(expiry.poll()))
+                evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the current watermark, Long.MIN_VALUE until it is first advanced
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Perform a stabbing query on the current window, returning the associated data
+     *
+     * @param time the time to stab
+     * @return the data associated with all intervals that contain time
+     */
+    public List<Type> get(long time) {
+        return tree.get(time);
+    }
+
+    /**
+     * Perform a stabbing query on the current window, returning the interval objects
+     *
+     * @param time the time to stab
+     * @return all intervals that contain time
+     */
+    public List<Interval<Type>> getIntervals(long time) {
+        return tree.getIntervals(time);
+    }
+
+    /**
+     * Perform an interval query on the current window, returning the associated data
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return the data associated with all intervals that intersect target
+     */
+    public List<Type> get(long start, long end) {
+        return tree.get(start, end);
+    }
+
+    /**
+     * Perform an interval query on the current window, returning the interval objects
+     *
+     * @param start the start of the interval to check
+     * @param end   the end of the interval to check
+     * @return all intervals that intersect target
+     */
+    public List<Interval<Type>> getIntervals(long start, long end) {
+        return tree.getIntervals(start, end);
+    }
+
+    /**
+     * Perform a stabbing query on the current window without allocating
+     *
+     * @param time     the time to stab
+     * @param consumer receives each interval that contains time
+     */
+    public void forEachContaining(long time, Consumer<? super Interval<Type>> consumer) {
+        tree.forEachContaining(time, consumer);
+    }
+
+    /**
+     * Perform an interval query on the current window without allocating
+     *
+     * @param start    the start of the interval to check
+     * @param end      the end of the interval to check
+     * @param consumer receives each interval that intersects target
+     */
+    public void forEachIntersecting(long start, long end, Consumer<? super Interval<Type>> consumer) {
+        tree.forEachIntersecting(start, end, consumer);
+    }
+
+    /**
+     * Remove all intervals, keeping the watermark
+     */
+    public void clear() {
+        tree.clear();
+        expiry.clear();
+    }
+
+    /**
+     * @return the number of intervals in the current window
+     */
+    public int currentSize() {
+        return tree.currentSize();
+    }
+}
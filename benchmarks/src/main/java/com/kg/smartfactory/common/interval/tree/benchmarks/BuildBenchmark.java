@@ -0,0 +1,80 @@
+package com.kg.smartfactory.common.interval.tree.benchmarks;
+
+import com.kg.smartfactory.common.interval.tree.Interval;
+import com.kg.smartfactory.common.interval.tree.IntervalTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a tree from scratch, and rebuilding it after a few mutations
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param
+    public Distribution distribution;
+
+    private List<Interval<Integer>> intervals;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        intervals = distribution.generate(size, 42);
+    }
+
+    @Benchmark
+    public IntervalTree<Integer> construct() {
+        return new IntervalTree<Integer>(intervals);
+    }
+
+    @Benchmark
+    public IntervalTree<Integer> rebuildAfterMutations(MutatedTree state) {
+        state.tree.build();
+        return state.tree;
+    }
+
+    /**
+     * A built tree that receives a handful of adds and removes before every rebuild
+     */
+    @State(Scope.Thread)
+    public static class MutatedTree {
+
+        @Param({"10"})
+        public int mutations;
+
+        IntervalTree<Integer> tree;
+        private List<Interval<Integer>> added;
+        private long[] times;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void build(BuildBenchmark benchmark) {
+            tree = new IntervalTree<Integer>(benchmark.intervals);
+            added = new ArrayList<Interval<Integer>>();
+            times = Distribution.queryTimes(benchmark.intervals, 4096, 7);
+        }
+
+        @Setup(Level.Invocation)
+        public void mutate() {
+            for (Interval<Integer> interval : added)
+                tree.removeInterval(interval);
+            added.clear();
+            for (int i = 0; i < mutations; i++) {
+                long start = times[next++ & (times.length - 1)];
+                Interval<Integer> interval = new Interval<Integer>(start, start + Distribution.HOUR, -1 - i);
+                tree.addInterval(interval);
+                added.add(interval);
+            }
+        }
+    }
+}
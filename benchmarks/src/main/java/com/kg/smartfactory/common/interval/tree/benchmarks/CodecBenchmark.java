@@ -0,0 +1,76 @@
+package com.kg.smartfactory.common.interval.tree.benchmarks;
+
+import com.kg.smartfactory.common.interval.tree.Interval;
+import com.kg.smartfactory.common.interval.tree.IntervalTree;
+import com.kg.smartfactory.common.interval.tree.IntervalTreeCodec;
+import com.kg.smartfactory.common.interval.tree.PayloadSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a snapshot of a tree held in memory, written with the binary codec against
+ * default Java serialization, so the file system stays out of the measurement
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    private static final PayloadSerializer<Integer> INTEGERS = new PayloadSerializer<Integer>() {
+        public void write(Integer data, DataOutput out) throws IOException {
+            out.writeInt(data);
+        }
+
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param
+    public Distribution distribution;
+
+    private byte[] encoded;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        List<Interval<Integer>> intervals = distribution.generate(size, 42);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IntervalTreeCodec.write(tree, INTEGERS, Channels.newChannel(bytes));
+        encoded = bytes.toByteArray();
+
+        bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(tree);
+        out.close();
+        serialized = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public IntervalTree<Integer> loadCodec() throws IOException {
+        return IntervalTreeCodec.read(Channels.newChannel(new ByteArrayInputStream(encoded)), INTEGERS);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public IntervalTree<Integer> loadSerialized() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized));
+        try {
+            return (IntervalTree<Integer>) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.kg.smartfactory.common.interval.tree.benchmarks;
+
+import com.kg.smartfactory.common.interval.tree.Interval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shapes of benchmark data, all spread over {@link #SPAN} milliseconds from {@link #ORIGIN}
+ */
+public enum Distribution {
+
+    /**
+     * Starts uniform over the span, lengths uniform with about eight intervals overlapping any time
+     */
+    UNIFORM {
+        @Override
+        void fill(List<Interval<Integer>> intervals, int size, Random random) {
+            long maxLength = Math.max(2, 16 * SPAN / size);
+            for (int i = 0; i < size; i++) {
+                long start = ORIGIN + (long) (random.nextDouble() * SPAN);
+                intervals.add(new Interval<Integer>(start, start + 1 + (long) (random.nextDouble() * maxLength), i));
+            }
+        }
+    },
+
+    /**
+     * Starts uniform over the span, long lengths with about a thousand intervals overlapping
+     * any time, so every node holds many intervals crossing its center
+     */
+    WIDE {
+        @Override
+        void fill(List<Interval<Integer>> intervals, int size, Random random) {
+            long maxLength = Math.max(2, 2000 * SPAN / size);
+            for (int i = 0; i < size; i++) {
+                long start = ORIGIN + (long) (random.nextDouble() * SPAN);
+                intervals.add(new Interval<Integer>(start, start + 1 + (long) (random.nextDouble() * maxLength), i));
+            }
+        }
+    },
+
+    /**
+     * Clusters of up to 64 intervals nested inside each other around a common center
+     */
+    NESTED {
+        @Override
+        void fill(List<Interval<Integer>> intervals, int size, Random random) {
+            while (intervals.size() < size) {
+                long center = ORIGIN + (long) (random.nextDouble() * SPAN);
+                long step = 1 + random.nextInt(60 * 1000);
+                int depth = Math.min(1 + random.nextInt(64), size - intervals.size());
+                for (int i = 1; i <= depth; i++)
+                    intervals.add(new Interval<Integer>(center - i * step, center + i * step, intervals.size()));
+            }
+        }
+    },
+
+    /**
+     * Every distinct interval repeated about a hundred times, data included
+     */
+    DUPLICATES {
+        @Override
+        void fill(List<Interval<Integer>> intervals, int size, Random random) {
+            List<Interval<Integer>> distinct = new ArrayList<Interval<Integer>>();
+            UNIFORM.fill(distinct, Math.max(1, size / 100), random);
+            for (int i = 0; i < size; i++) {
+                Interval<Integer> interval = distinct.get(random.nextInt(distinct.size()));
+                intervals.add(new Interval<Integer>(interval.getStart(), interval.getEnd(), interval.getData()));
+            }
+        }
+    },
+
+    /**
+     * Factory-like: back to back eight hour shifts on 50 lines, each shift followed by the
+     * operations scheduled within it, so many intervals share their starts and ends
+     */
+    SHIFTS {
+        @Override
+        void fill(List<Interval<Integer>> intervals, int size, Random random) {
+            long shift = 8 * HOUR;
+            for (long shiftStart = ORIGIN + 6 * HOUR; intervals.size() < size; shiftStart += shift) {
+                for (int line = 0; line < LINES && intervals.size() < size; line++) {
+                    long shiftEnd = shiftStart + shift;
+                    intervals.add(new Interval<Integer>(shiftStart, shiftEnd, intervals.size()));
+
+                    long operationStart = shiftStart;
+                    while (operationStart < shiftEnd && intervals.size() < size) {
+                        long length = 15 * 60 * 1000 + (long) (random.nextDouble() * (105 * 60 * 1000));
+                        long operationEnd = Math.min(shiftEnd, operationStart + length);
+                        intervals.add(new Interval<Integer>(operationStart, operationEnd, intervals.size()));
+                        operationStart = operationEnd;
+                    }
+                }
+            }
+        }
+    };
+
+    public static final long ORIGIN = 1500000000000L;
+    public static final long HOUR = 60 * 60 * 1000;
+    public static final long SPAN = 365 * 24 * HOUR;
+
+    private static final int LINES = 50;
+
+    /**
+     * @param size the number of intervals to generate
+     * @param seed the seed making the data reproducible
+     * @return the intervals, each with a distinct data value unless duplicated on purpose
+     */
+    public List<Interval<Integer>> generate(int size, long seed) {
+        List<Interval<Integer>> intervals = new ArrayList<Interval<Integer>>(size);
+        fill(intervals, size, new Random(seed));
+        return intervals;
+    }
+
+    abstract void fill(List<Interval<Integer>> intervals, int size, Random random);
+
+    /**
+     * @return query times spread over the range the intervals cover
+     */
+    public static long[] queryTimes(List<Interval<Integer>> intervals, int count, long seed) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Interval<Integer> interval : intervals) {
+            min = Math.min(min, interval.getStart());
+            max = Math.max(max, interval.getEnd());
+        }
+
+        Random random = new Random(seed);
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++)
+            times[i] = min + (long) (random.nextDouble() * (max - min));
+        return times;
+    }
+}
@@ -0,0 +1,55 @@
+package com.kg.smartfactory.common.interval.tree.benchmarks;
+
+import com.kg.smartfactory.common.interval.tree.Interval;
+import com.kg.smartfactory.common.interval.tree.IntervalTree;
+import com.kg.smartfactory.common.interval.tree.IntervalTreeIterator;
+import com.kg.smartfactory.common.interval.tree.IteratorDirection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening an iterator at a border and taking a fixed number of steps from it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IteratorBenchmark {
+
+    private static final int BORDERS = 1 << 12;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param
+    public Distribution distribution;
+
+    @Param
+    public IteratorDirection direction;
+
+    @Param({"64"})
+    public int steps;
+
+    private IntervalTree<Integer> tree;
+    private long[] borders;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build() {
+        List<Interval<Integer>> intervals = distribution.generate(size, 42);
+        tree = new IntervalTree<Integer>(intervals);
+        borders = Distribution.queryTimes(intervals, BORDERS, 13);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        IntervalTreeIterator<Integer> iterator = tree.getIterator(borders[next++ & (BORDERS - 1)], direction);
+        for (int i = 0; i < steps && iterator.hasNext(); i++)
+            blackhole.consume(iterator.next());
+    }
+}
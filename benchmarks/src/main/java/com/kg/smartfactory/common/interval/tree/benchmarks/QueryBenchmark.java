@@ -0,0 +1,53 @@
+package com.kg.smartfactory.common.interval.tree.benchmarks;
+
+import com.kg.smartfactory.common.interval.tree.Interval;
+import com.kg.smartfactory.common.interval.tree.IntervalTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stabbing and range queries against a built tree, at query times spread over its data
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final int QUERIES = 1 << 12;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param
+    public Distribution distribution;
+
+    @Param({"3600000"})
+    public long window;
+
+    private IntervalTree<Integer> tree;
+    private long[] times;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build() {
+        List<Interval<Integer>> intervals = distribution.generate(size, 42);
+        tree = new IntervalTree<Integer>(intervals);
+        times = Distribution.queryTimes(intervals, QUERIES, 11);
+    }
+
+    @Benchmark
+    public List<Integer> stab() {
+        return tree.get(times[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public List<Integer> range() {
+        long start = times[next++ & (QUERIES - 1)];
+        return tree.get(start, start + window);
+    }
+}
@@ -0,0 +1,100 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregatingIntervalTreeTest {
+
+    private static final IntervalAggregator<Integer, Long> SUM = new IntervalAggregator<Integer, Long>() {
+        public Long identity() {
+            return 0L;
+        }
+
+        public Long extract(Interval<Integer> interval) {
+            return (long) interval.getData();
+        }
+
+        public Long combine(Long left, Long right) {
+            return left + right;
+        }
+    };
+
+    private static final IntervalAggregator<Integer, Integer> MAX = new IntervalAggregator<Integer, Integer>() {
+        public Integer identity() {
+            return Integer.MIN_VALUE;
+        }
+
+        public Integer extract(Interval<Integer> interval) {
+            return interval.getData();
+        }
+
+        public Integer combine(Integer left, Integer right) {
+            return Math.max(left, right);
+        }
+    };
+
+    @Test
+    void aggregatesMatchFoldsOverBruteForce() {
+        Random random = new Random(30);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 4000, 100000, 3000);
+        AggregatingIntervalTree<Integer, Long> sums = new AggregatingIntervalTree<Integer, Long>(intervals, SUM);
+        AggregatingIntervalTree<Integer, Integer> maxima = new AggregatingIntervalTree<Integer, Integer>(intervals, MAX);
+
+        for (int query = 0; query < 400; query++) {
+            long time = random.nextInt(106000) - 3000;
+            assertEquals(sum(containing(intervals, time)), sums.aggregate(time));
+            assertEquals(max(containing(intervals, time)), maxima.aggregate(time));
+
+            long end = time + random.nextInt(random.nextBoolean() ? 10 : 20000);
+            assertEquals(sum(intersecting(intervals, time, end)), sums.aggregate(time, end));
+            assertEquals(max(intersecting(intervals, time, end)), maxima.aggregate(time, end));
+        }
+    }
+
+    @Test
+    void aggregatesFollowRebuilds() {
+        Random random = new Random(31);
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>(TestIntervals.random(random, 2000, 50000, 2000));
+        AggregatingIntervalTree<Integer, Long> tree = new AggregatingIntervalTree<Integer, Long>(SUM);
+        for (Interval<Integer> interval : expected)
+            tree.addInterval(interval);
+
+        for (int round = 0; round < 8; round++) {
+            for (int query = 0; query < 50; query++) {
+                long time = random.nextInt(52000);
+                assertEquals(sum(containing(expected, time)), tree.aggregate(time));
+                assertEquals(sum(intersecting(expected, time, time + 1500)), tree.aggregate(time, time + 1500));
+            }
+            for (int i = 0; i < 100; i++)
+                tree.removeInterval(expected.remove(random.nextInt(expected.size())));
+            Interval<Integer> added = new Interval<Integer>(round * 1000, round * 1000 + 40000, 1000000);
+            tree.addInterval(added);
+            expected.add(added);
+        }
+    }
+
+    @Test
+    void emptyTreeAggregatesToIdentity() {
+        AggregatingIntervalTree<Integer, Integer> tree = new AggregatingIntervalTree<Integer, Integer>(MAX);
+        assertEquals(Integer.MIN_VALUE, (int) tree.aggregate(5));
+        assertEquals(Integer.MIN_VALUE, (int) tree.aggregate(0, 10));
+    }
+
+    private static long sum(List<Interval<Integer>> intervals) {
+        long sum = 0;
+        for (Interval<Integer> interval : intervals)
+            sum += interval.getData();
+        return sum;
+    }
+
+    private static int max(List<Interval<Integer>> intervals) {
+        int max = Integer.MIN_VALUE;
+        for (Interval<Integer> interval : intervals)
+            max = Math.max(max, interval.getData());
+        return max;
+    }
+}
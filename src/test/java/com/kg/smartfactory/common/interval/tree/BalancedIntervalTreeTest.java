@@ -0,0 +1,88 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalancedIntervalTreeTest {
+
+    @Test
+    void queriesMatchBruteForceUnderRandomMutations() {
+        Random random = new Random(1);
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>();
+        BalancedIntervalTree<Integer> tree = new BalancedIntervalTree<Integer>();
+
+        for (int step = 0; step < 20000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 4) {
+                long start = random.nextInt(10000);
+                Interval<Integer> interval = new Interval<Integer>(start, start + 1 + random.nextInt(300), step);
+                tree.addInterval(interval);
+                expected.add(interval);
+                if (random.nextInt(10) == 0) {
+                    tree.addInterval(interval);
+                    expected.add(interval);
+                }
+            } else if (operation < 6 && !expected.isEmpty()) {
+                Interval<Integer> interval = expected.remove(random.nextInt(expected.size()));
+                assertTrue(tree.removeInterval(interval));
+            } else if (operation == 6) {
+                assertFalse(tree.removeInterval(new Interval<Integer>(-5, -1, -1)));
+            } else if (operation < 9) {
+                long time = random.nextInt(10400) - 200;
+                List<Interval<Integer>> found = tree.getIntervals(time);
+                assertSameIntervals(containing(expected, time), found);
+                assertSortedByStart(found);
+            } else {
+                long start = random.nextInt(10400) - 200;
+                long end = start + random.nextInt(500);
+                List<Interval<Integer>> found = tree.getIntervals(start, end);
+                assertSameIntervals(intersecting(expected, start, end), found);
+                assertSortedByStart(found);
+            }
+            assertEquals(expected.size(), tree.currentSize());
+        }
+    }
+
+    @Test
+    void staysBalancedUnderSortedInsertsAndRemovals() {
+        BalancedIntervalTree<Integer> tree = new BalancedIntervalTree<Integer>();
+        List<Interval<Integer>> added = new ArrayList<Interval<Integer>>();
+        for (int i = 0; i < 1 << 16; i++) {
+            Interval<Integer> interval = new Interval<Integer>(i, i + 10, i);
+            tree.addInterval(interval);
+            added.add(interval);
+        }
+        assertTrue(tree.height() <= maxAvlHeight(tree.currentSize()), "height " + tree.height());
+
+        for (int i = 0; i < added.size(); i += 2)
+            assertTrue(tree.removeInterval(added.get(i)));
+        assertTrue(tree.height() <= maxAvlHeight(tree.currentSize()), "height " + tree.height());
+        assertTrue(tree.getIntervals(-100, -1).isEmpty());
+        assertEquals(Arrays.asList(1, 3), data(tree.getIntervals(4, 5)));
+    }
+
+    @Test
+    void iteratesInStartOrder() {
+        List<Interval<Integer>> intervals = random(new Random(2), 5000, 100000, 1000);
+        BalancedIntervalTree<Integer> tree = new BalancedIntervalTree<Integer>(intervals);
+        List<Interval<Integer>> iterated = new ArrayList<Interval<Integer>>();
+        Iterator<Interval<Integer>> iterator = tree.iterator();
+        while (iterator.hasNext())
+            iterated.add(iterator.next());
+        assertSortedByStart(iterated);
+        assertSameIntervals(intervals, iterated);
+    }
+
+    private static void assertSortedByStart(List<Interval<Integer>> intervals) {
+        for (int i = 1; i < intervals.size(); i++)
+            assertTrue(intervals.get(i - 1).getStart() <= intervals.get(i).getStart());
+    }
+
+    private static int maxAvlHeight(int size) {
+        return (int) Math.ceil(1.45 * Math.log(size + 2) / Math.log(2));
+    }
+}
@@ -0,0 +1,67 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchQueryTest {
+
+    @Test
+    void batchesMatchBruteForce() {
+        Random random = new Random(10);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 3000, 100000, 2000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        long[] times = new long[500];
+        long[] starts = new long[500];
+        long[] ends = new long[500];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = random.nextInt(104000) - 2000;
+            starts[i] = random.nextInt(104000) - 2000;
+            ends[i] = starts[i] + 1 + random.nextInt(random.nextBoolean() ? 50 : 20000);
+        }
+        List<List<Interval<Integer>>> stabbed = tree.getIntervals(times);
+        List<List<Interval<Integer>>> queried = tree.getIntervals(starts, ends);
+        for (int i = 0; i < times.length; i++) {
+            assertSameIntervals(containing(intervals, times[i]), stabbed.get(i));
+            assertSameIntervals(intersecting(intervals, starts[i], ends[i]), queried.get(i));
+        }
+    }
+
+    @Test
+    void pooledBatchesMatchSequentialOnes() {
+        Random random = new Random(11);
+        IntervalNode<Integer> head = IntervalNodeBuilder.build(TestIntervals.random(random, 20000, 1000000, 1000));
+
+        // every range spans the root's center, so more than the threshold reach both children
+        int count = BatchQuery.PARALLEL_THRESHOLD + 2000;
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = head.getCenter() - random.nextInt(2000);
+            ends[i] = head.getCenter() + 1 + random.nextInt(2000);
+            times[i] = random.nextInt(1000000);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            List<List<Interval<Integer>>> sequential = BatchQuery.query(head, starts, ends, null);
+            List<List<Interval<Integer>>> pooled = BatchQuery.query(head, starts, ends, pool);
+            assertEquals(count, pooled.size());
+            for (int i = 0; i < count; i++)
+                assertSameIntervals(sequential.get(i), pooled.get(i));
+
+            List<List<Interval<Integer>>> stabbed = BatchQuery.stab(head, times, null);
+            List<List<Interval<Integer>>> pooledStabbed = BatchQuery.stab(head, times, pool);
+            for (int i = 0; i < count; i++)
+                assertSameIntervals(stabbed.get(i), pooledStabbed.get(i));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
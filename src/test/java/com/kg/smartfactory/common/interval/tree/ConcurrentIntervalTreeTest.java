@@ -0,0 +1,128 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentIntervalTreeTest {
+
+    @Test
+    void publishedVersionMatchesBruteForceWhileReadersRun() throws Exception {
+        final ConcurrentIntervalTree<Integer> tree = new ConcurrentIntervalTree<Integer>(1);
+        final AtomicBoolean done = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool(3);
+        List<Future<Integer>> reads = new ArrayList<Future<Integer>>();
+        for (int reader = 0; reader < 3; reader++) {
+            final long seed = reader;
+            reads.add(readers.submit(new Callable<Integer>() {
+                public Integer call() {
+                    Random random = new Random(seed);
+                    int queries = 0;
+                    while (!done.get()) {
+                        // a snapshot is immutable, so querying it twice must agree
+                        FrozenIntervalTree<Integer> snapshot = tree.snapshot();
+                        long time = random.nextInt(10000);
+                        assertEquals(snapshot.get(time).size(), snapshot.get(time).size());
+                        queries++;
+                    }
+                    return queries;
+                }
+            }));
+        }
+
+        try {
+            Random random = new Random(6);
+            List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>();
+            for (int step = 0; step < 3000; step++) {
+                if (random.nextInt(3) > 0 || expected.isEmpty()) {
+                    long start = random.nextInt(10000);
+                    Interval<Integer> interval = new Interval<Integer>(start, start + 1 + random.nextInt(300), step);
+                    tree.addInterval(interval);
+                    expected.add(interval);
+                } else {
+                    tree.removeInterval(expected.remove(random.nextInt(expected.size())));
+                }
+                if (step % 500 == 0) {
+                    tree.publish();
+                    assertTrue(tree.inSync());
+                    for (int query = 0; query < 50; query++) {
+                        long time = random.nextInt(10400) - 200;
+                        assertSameData(data(containing(expected, time)), tree.get(time));
+                        assertSameData(data(intersecting(expected, time, time + 500)), tree.get(time, time + 500));
+                    }
+                }
+            }
+            // the background publisher catches up on its own
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!tree.inSync() && System.nanoTime() < deadline)
+                Thread.sleep(5);
+            assertTrue(tree.inSync());
+            assertEquals(expected.size(), tree.currentSize());
+        } finally {
+            done.set(true);
+            for (Future<Integer> read : reads)
+                assertTrue(read.get() > 0);
+            readers.shutdown();
+            tree.close();
+        }
+    }
+
+    @Test
+    void removeIntervalsRemovesOneOccurrenceEach() {
+        ConcurrentIntervalTree<Integer> tree = new ConcurrentIntervalTree<Integer>(1000);
+        Interval<Integer> interval = new Interval<Integer>(0, 10, 1);
+        tree.addIntervals(Arrays.asList(interval, interval, interval, new Interval<Integer>(5, 15, 2)));
+        tree.removeIntervals(Arrays.asList(interval, new Interval<Integer>(0, 10, 1)));
+        tree.publish();
+        assertSameData(Arrays.asList(1, 2), tree.get(7));
+
+        IntervalTree<Integer> reference = new IntervalTree<Integer>();
+        reference.addInterval(interval);
+        reference.addInterval(interval);
+        reference.removeIntervals(Arrays.asList(interval));
+        assertEquals(1, reference.get(7).size());
+        tree.close();
+    }
+
+    @Test
+    void closedTreeRejectsChangesButStaysQueryable() {
+        ConcurrentIntervalTree<Integer> tree = new ConcurrentIntervalTree<Integer>(1000);
+        tree.addInterval(0, 10, 1);
+        tree.publish();
+        tree.close();
+        assertThrows(IllegalStateException.class, () -> tree.addInterval(0, 10, 2));
+        assertThrows(IllegalStateException.class, () -> tree.removeInterval(new Interval<Integer>(0, 10, 1)));
+        assertEquals(Arrays.asList(1), tree.get(5));
+    }
+
+    @Test
+    void rejectedScheduleIsRetriedByTheNextChange() throws Exception {
+        // rejects the first rebuild it is asked to schedule, as a saturated or restarting pool might
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1) {
+            private boolean rejected;
+
+            @Override
+            public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+                if (!rejected) {
+                    rejected = true;
+                    throw new RejectedExecutionException();
+                }
+                return super.schedule(command, delay, unit);
+            }
+        };
+        ConcurrentIntervalTree<Integer> tree = new ConcurrentIntervalTree<Integer>(1, executor);
+        assertThrows(RejectedExecutionException.class, () -> tree.addInterval(0, 10, 1));
+        tree.addInterval(5, 15, 2);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!tree.inSync() && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertSameData(Arrays.asList(1, 2), tree.get(7));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,53 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsumerQueryTest {
+
+    @Test
+    void consumerAndBufferQueriesMatchBruteForce() {
+        Random random = new Random(3);
+        List<Interval<Integer>> intervals = random(random, 4000, 50000, 800);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+        BalancedIntervalTree<Integer> balanced = new BalancedIntervalTree<Integer>(intervals);
+        IntervalBuffer<Integer> buffer = new IntervalBuffer<Integer>(1);
+
+        for (int query = 0; query < 1000; query++) {
+            long time = random.nextInt(52000) - 1000;
+            long end = time + random.nextInt(2000);
+            List<Interval<Integer>> stabbed = containing(intervals, time);
+            List<Interval<Integer>> intersected = intersecting(intervals, time, end);
+
+            List<Interval<Integer>> consumed = new ArrayList<Interval<Integer>>();
+            tree.forEachContaining(time, new CollectingConsumer<Interval<Integer>>(consumed));
+            assertSameIntervals(stabbed, consumed);
+            consumed.clear();
+            tree.forEachIntersecting(time, end, new CollectingConsumer<Interval<Integer>>(consumed));
+            assertSameIntervals(intersected, consumed);
+
+            // the buffer is reused across queries and trees, each query clearing it first
+            assertEquals(stabbed.size(), tree.getIntervals(time, buffer));
+            assertSameIntervals(stabbed, contents(buffer));
+            assertEquals(intersected.size(), tree.getIntervals(time, end, buffer));
+            assertSameIntervals(intersected, contents(buffer));
+            assertEquals(stabbed.size(), balanced.getIntervals(time, buffer));
+            assertSameIntervals(stabbed, contents(buffer));
+            assertEquals(intersected.size(), balanced.getIntervals(time, end, buffer));
+            assertSameIntervals(intersected, contents(buffer));
+            for (int i = 0; i < buffer.size(); i++)
+                assertEquals(buffer.get(i).getData(), buffer.getData(i));
+        }
+    }
+
+    private static List<Interval<Integer>> contents(IntervalBuffer<Integer> buffer) {
+        List<Interval<Integer>> result = new ArrayList<Interval<Integer>>();
+        for (int i = 0; i < buffer.size(); i++)
+            result.add(buffer.get(i));
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountQueryTest {
+
+    @Test
+    void countsMatchBruteForceWithDuplicates() {
+        Random random = new Random(20);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 4000, 100000, 3000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        for (int query = 0; query < 500; query++) {
+            long time = random.nextInt(106000) - 3000;
+            assertEquals(containing(intervals, time).size(), tree.count(time));
+            long end = time + 1 + random.nextInt(random.nextBoolean() ? 10 : 10000);
+            assertEquals(intersecting(intervals, time, end).size(), tree.count(time, end));
+        }
+    }
+
+    @Test
+    void countsAtSharedEndpointsFollowHalfOpenIntervals() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>();
+        tree.addInterval(0, 10, 1);
+        tree.addInterval(0, 10, 1);
+        tree.addInterval(10, 20, 2);
+        tree.addInterval(5, 10, 3);
+
+        assertEquals(3, tree.count(9));
+        assertEquals(1, tree.count(10));
+        assertEquals(0, tree.count(20));
+        assertEquals(3, tree.count(9, 10));
+        assertEquals(1, tree.count(10, 11));
+        assertEquals(4, tree.count(0, 20));
+        // an empty target falls back to visiting the tree
+        assertEquals(tree.get(7, 7).size(), tree.count(7, 7));
+    }
+
+    @Test
+    void countsFollowMutations() {
+        Random random = new Random(21);
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>(TestIntervals.random(random, 2000, 50000, 2000));
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(expected);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++)
+                tree.removeInterval(expected.remove(random.nextInt(expected.size())));
+            for (Interval<Integer> interval : TestIntervals.random(random, 100, 50000, 2000)) {
+                tree.addInterval(interval);
+                expected.add(interval);
+            }
+            for (int query = 0; query < 50; query++) {
+                long time = random.nextInt(52000);
+                assertEquals(containing(expected, time).size(), tree.count(time));
+                assertEquals(intersecting(expected, time, time + 700).size(), tree.count(time, time + 700));
+            }
+        }
+    }
+}
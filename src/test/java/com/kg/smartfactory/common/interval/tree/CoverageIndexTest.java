@@ -0,0 +1,85 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoverageIndexTest {
+
+    private static final int SPAN = 20000;
+
+    @Test
+    void coverageMatchesBruteForce() {
+        Random random = new Random(130);
+        for (int round = 0; round < 3; round++) {
+            // sparse to dense, so both gaps and long merged runs show up
+            List<Interval<Integer>> intervals = TestIntervals.random(random, 50 + round * 400, SPAN - 300, 300);
+            IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+            boolean[] covered = new boolean[SPAN + 1];
+            for (Interval<Integer> interval : intervals) {
+                for (long t = interval.getStart(); t < interval.getEnd(); t++)
+                    covered[(int) t] = true;
+            }
+
+            for (int query = 0; query < 200; query++) {
+                int start = random.nextInt(SPAN);
+                int end = start + random.nextInt(SPAN - start + 1);
+                long length = 0;
+                for (int t = start; t < end; t++)
+                    length += covered[t] ? 1 : 0;
+                assertEquals(length, tree.coveredLength(start, end));
+                assertEquals(runs(covered, start, end, true), bounds(tree.getUnion(start, end)));
+                assertEquals(runs(covered, start, end, false), bounds(tree.getGaps(start, end)));
+            }
+        }
+    }
+
+    @Test
+    void coverageFollowsMutations() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>();
+        tree.addInterval(0, 10, 1);
+        tree.addInterval(10, 20, 2);
+        tree.addInterval(30, 40, 3);
+        assertEquals(30, tree.coveredLength(0, 100));
+        assertEquals(Arrays.asList(0L, 20L, 30L, 40L), bounds(tree.getUnion(0, 100)));
+        assertNull(tree.getUnion(0, 100).get(0).getData());
+
+        tree.removeInterval(new Interval<Integer>(10, 20, 2));
+        tree.addInterval(35, 50, 4);
+        assertEquals(30, tree.coveredLength(0, 100));
+        assertEquals(Arrays.asList(10L, 30L, 50L, 100L), bounds(tree.getGaps(0, 100)));
+        assertEquals(Arrays.asList(5L, 10L), bounds(tree.getUnion(5, 15)));
+        assertTrue(tree.getGaps(5, 5).isEmpty());
+    }
+
+    /**
+     * @return the start and end of every maximal run of times in [start, end) equal to value
+     */
+    private static List<Long> runs(boolean[] covered, int start, int end, boolean value) {
+        List<Long> runs = new ArrayList<Long>();
+        int t = start;
+        while (t < end) {
+            if (covered[t] != value) {
+                t++;
+                continue;
+            }
+            int runStart = t;
+            while (t < end && covered[t] == value)
+                t++;
+            runs.add((long) runStart);
+            runs.add((long) t);
+        }
+        return runs;
+    }
+
+    private static List<Long> bounds(List<Interval<Integer>> segments) {
+        List<Long> bounds = new ArrayList<Long>();
+        for (Interval<Integer> segment : segments) {
+            bounds.add(segment.getStart());
+            bounds.add(segment.getEnd());
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,59 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DepthIndexTest {
+
+    private static final int SPAN = 20000;
+
+    @Test
+    void depthMatchesBruteForce() {
+        Random random = new Random(140);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 3000, SPAN - 500, 500);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+        int[] depth = new int[SPAN + 1];
+        for (Interval<Integer> interval : intervals) {
+            for (long t = interval.getStart(); t < interval.getEnd(); t++)
+                depth[(int) t]++;
+        }
+
+        for (int query = 0; query < 300; query++) {
+            int start = random.nextInt(SPAN);
+            int end = start + random.nextInt(random.nextBoolean() ? 50 : SPAN - start + 1);
+
+            DepthPoint peak = new DepthPoint(start, depth[start]);
+            for (int t = start + 1; t < end; t++) {
+                if (depth[t] > peak.getDepth())
+                    peak = new DepthPoint(t, depth[t]);
+            }
+            assertEquals(peak, tree.maxDepth(start, end));
+
+            List<DepthPoint> profile = new ArrayList<DepthPoint>();
+            profile.add(new DepthPoint(start, depth[start]));
+            for (int t = start + 1; t < end; t++) {
+                if (depth[t] != depth[t - 1])
+                    profile.add(new DepthPoint(t, depth[t]));
+            }
+            assertEquals(profile, tree.getDepthProfile(start, end));
+        }
+    }
+
+    @Test
+    void depthFollowsMutationsAndDuplicates() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>();
+        tree.addInterval(0, 10, 1);
+        tree.addInterval(0, 10, 1);
+        tree.addInterval(5, 15, 2);
+        assertEquals(new DepthPoint(5, 3), tree.maxDepth(0, 100));
+        assertEquals(new DepthPoint(12, 1), tree.maxDepth(12, 12));
+
+        tree.removeInterval(new Interval<Integer>(0, 10, 1));
+        assertEquals(new DepthPoint(5, 2), tree.maxDepth(0, 100));
+        assertEquals(Arrays.asList(new DepthPoint(-5, 0), new DepthPoint(0, 1), new DepthPoint(5, 2),
+                new DepthPoint(10, 1), new DepthPoint(15, 0)), tree.getDepthProfile(-5, 20));
+    }
+}
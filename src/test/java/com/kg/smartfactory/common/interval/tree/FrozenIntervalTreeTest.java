@@ -0,0 +1,48 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrozenIntervalTreeTest {
+
+    @Test
+    void frozenQueriesMatchBruteForce() {
+        Random random = new Random(4);
+        List<Interval<Integer>> intervals = random(random, 5000, 100000, 2000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+        FrozenIntervalTree<Integer> frozen = tree.freeze();
+        FrozenIntervalTree<Integer> direct = FrozenIntervalTree.of(intervals);
+        assertEquals(intervals.size(), frozen.size());
+
+        for (int query = 0; query < 1000; query++) {
+            long time = random.nextInt(104000) - 2000;
+            long end = time + random.nextInt(3000);
+            assertSameData(data(containing(intervals, time)), frozen.get(time));
+            assertSameData(data(containing(intervals, time)), direct.get(time));
+            assertSameData(data(intersecting(intervals, time, end)), frozen.get(time, end));
+
+            final List<Interval<Integer>> visited = new ArrayList<Interval<Integer>>();
+            frozen.forEachIntersecting(time, end, new IntervalVisitor<Integer>() {
+                public void visit(long start, long end, Integer data) {
+                    visited.add(new Interval<Integer>(start, end, data));
+                }
+            });
+            assertSameIntervals(intersecting(intervals, time, end), visited);
+        }
+    }
+
+    @Test
+    void snapshotIgnoresLaterMutations() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>();
+        tree.addInterval(0, 10, 1);
+        FrozenIntervalTree<Integer> frozen = tree.freeze();
+        tree.addInterval(0, 10, 2);
+        assertEquals(Arrays.asList(1), frozen.get(5));
+        assertSameData(Arrays.asList(1, 2), tree.get(5));
+        assertTrue(new IntervalTree<Integer>().freeze().get(0).isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalHandleTest {
+
+    @Test
+    void removesAndUpdatesThroughHandlesMatchBruteForce() {
+        Random random = new Random(70);
+        BalancedIntervalTree<Integer> tree = new BalancedIntervalTree<Integer>();
+        List<IntervalHandle<Integer>> handles = new ArrayList<IntervalHandle<Integer>>();
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>();
+
+        for (int step = 0; step < 20000; step++) {
+            int action = random.nextInt(4);
+            if (action < 2 || handles.isEmpty()) {
+                long start = random.nextInt(100000);
+                // equal start, end and data for some, so handles must tell equal intervals apart
+                int data = random.nextInt(10) == 0 ? -1 : step;
+                long end = data == -1 ? start + 100 : start + 1 + random.nextInt(2000);
+                IntervalHandle<Integer> handle = tree.addInterval(start, end, data);
+                handles.add(handle);
+                expected.add(handle.getInterval());
+            } else if (action == 2) {
+                int index = random.nextInt(handles.size());
+                IntervalHandle<Integer> handle = handles.remove(index);
+                assertSame(handle.getInterval(), expected.remove(index));
+                assertTrue(tree.remove(handle));
+                assertFalse(tree.remove(handle));
+            } else {
+                IntervalHandle<Integer> handle = handles.get(random.nextInt(handles.size()));
+                long start = random.nextInt(100000);
+                assertTrue(tree.update(handle, start, start + 1 + random.nextInt(2000)));
+                assertEquals(start, handle.getStart());
+                assertEquals(start, handle.getInterval().getStart());
+            }
+
+            if (step % 1000 == 0) {
+                assertEquals(expected.size(), tree.currentSize());
+                for (int query = 0; query < 20; query++) {
+                    long time = random.nextInt(102000);
+                    assertSameIntervals(containing(expected, time), tree.getIntervals(time));
+                    assertSameIntervals(intersecting(expected, time, time + 500), tree.getIntervals(time, time + 500));
+                }
+            }
+        }
+    }
+
+    @Test
+    void staleAndForeignHandlesAreRejected() {
+        BalancedIntervalTree<Integer> tree = new BalancedIntervalTree<Integer>();
+        BalancedIntervalTree<Integer> other = new BalancedIntervalTree<Integer>();
+        IntervalHandle<Integer> handle = tree.addInterval(0, 10, 1);
+        IntervalHandle<Integer> foreign = other.addInterval(0, 10, 1);
+
+        assertFalse(tree.remove(foreign));
+        assertFalse(tree.update(foreign, 5, 15));
+        assertEquals(1, other.currentSize());
+
+        assertTrue(tree.removeInterval(new Interval<Integer>(0, 10, 1)));
+        assertFalse(tree.remove(handle));
+        assertFalse(tree.update(handle, 5, 15));
+
+        IntervalHandle<Integer> cleared = tree.addInterval(0, 10, 2);
+        tree.clear();
+        assertFalse(tree.remove(cleared));
+        assertEquals(0, tree.currentSize());
+    }
+}
@@ -0,0 +1,80 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalJoinTest {
+
+    @Test
+    void joinsMatchBruteForcePairs() {
+        Random random = new Random(110);
+        List<Interval<Integer>> lefts = TestIntervals.random(random, 12000, 1000000, 300);
+        List<Interval<Integer>> rights = TestIntervals.random(random, 12000, 1000000, 300);
+        // shared starts and touching ends on both sides
+        lefts.add(new Interval<Integer>(500, 600, -1));
+        rights.add(new Interval<Integer>(500, 550, -1));
+        rights.add(new Interval<Integer>(600, 700, -2));
+        IntervalTree<Integer> left = new IntervalTree<Integer>(lefts);
+        IntervalTree<Integer> right = new IntervalTree<Integer>(rights);
+
+        List<Long> expected = new ArrayList<Long>();
+        for (Interval<Integer> l : lefts) {
+            for (Interval<Integer> r : rights) {
+                if (l.getEnd() > r.getStart() && l.getStart() < r.getEnd())
+                    expected.add(pair(l, r));
+            }
+        }
+        Collections.sort(expected);
+
+        assertEquals(expected, join(left, right, null));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertTrue(lefts.size() + rights.size() > IntervalJoin.PARALLEL_THRESHOLD);
+            assertEquals(expected, join(left, right, pool));
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Interval<Integer>> sortedRights = new ArrayList<Interval<Integer>>(rights);
+        Collections.sort(sortedRights, IntervalJoin.BY_START);
+        final List<Long> streamed = new ArrayList<Long>();
+        IntervalJoin.join(left, sortedRights, new IntervalPairVisitor<Integer, Integer>() {
+            public void visit(Interval<Integer> l, Interval<Integer> r) {
+                streamed.add(pair(l, r));
+            }
+        });
+        Collections.sort(streamed);
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    void unorderedStreamIsRejected() {
+        IntervalTree<Integer> left = new IntervalTree<Integer>(TestIntervals.random(new Random(111), 10, 100, 10));
+        List<Interval<Integer>> right = Arrays.asList(new Interval<Integer>(50, 60, 1), new Interval<Integer>(10, 20, 2));
+        assertThrows(IllegalArgumentException.class, () -> IntervalJoin.join(left, right,
+                new IntervalPairVisitor<Integer, Integer>() {
+                    public void visit(Interval<Integer> l, Interval<Integer> r) {
+                    }
+                }));
+    }
+
+    private static List<Long> join(IntervalTree<Integer> left, IntervalTree<Integer> right, ForkJoinPool pool) {
+        final List<Long> pairs = Collections.synchronizedList(new ArrayList<Long>());
+        IntervalJoin.join(left, right, new IntervalPairVisitor<Integer, Integer>() {
+            public void visit(Interval<Integer> l, Interval<Integer> r) {
+                pairs.add(pair(l, r));
+            }
+        }, pool);
+        List<Long> sorted = new ArrayList<Long>(pairs);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static long pair(Interval<Integer> left, Interval<Integer> right) {
+        return ((long) left.getData() << 32) + right.getData();
+    }
+}
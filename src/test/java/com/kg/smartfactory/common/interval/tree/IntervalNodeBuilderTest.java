@@ -0,0 +1,103 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalNodeBuilderTest {
+
+    @Test
+    void selectFindsTheKthSmallest() {
+        Random random = new Random(9);
+        for (int round = 0; round < 200; round++) {
+            int length = 1 + random.nextInt(300);
+            long[] values = new long[length];
+            for (int i = 0; i < length; i++)
+                values[i] = random.nextBoolean() ? random.nextInt(20) : random.nextLong();
+            if (round % 3 == 0)
+                Arrays.sort(values);
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+
+            int from = random.nextInt(length);
+            int to = from + 1 + random.nextInt(length - from);
+            long[] range = Arrays.copyOfRange(values, from, to);
+            Arrays.sort(range);
+            int k = from + random.nextInt(to - from);
+            assertEquals(range[k - from], IntervalNodeBuilder.select(values, from, to, k));
+        }
+    }
+
+    @Test
+    void builtTreesHoldEveryIntervalAtAValidNode() {
+        Random random = new Random(10);
+        // above the parallel threshold, shuffled and sorted by start as the codec loads them
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 3 * IntervalNodeBuilder.PARALLEL_THRESHOLD, 1000000, 3000);
+        List<Interval<Integer>> sortedByStart = new ArrayList<Interval<Integer>>(intervals);
+        Collections.sort(sortedByStart, IntervalJoin.BY_START);
+
+        for (List<Interval<Integer>> input : Arrays.asList(intervals, sortedByStart)) {
+            IntervalNode<Integer> head = IntervalNodeBuilder.build(input);
+            List<Interval<Integer>> held = new ArrayList<Interval<Integer>>();
+            assertEquals(input.size(), check(head, Long.MIN_VALUE, Long.MAX_VALUE, held));
+            assertSameIntervals(input, held);
+
+            IntervalTree<Integer> tree = new IntervalTree<Integer>(input);
+            for (int query = 0; query < 200; query++) {
+                long time = random.nextInt(1010000) - 5000;
+                assertSameIntervals(containing(input, time), tree.getIntervals(time));
+                assertSameIntervals(intersecting(input, time, time + 5000), tree.getIntervals(time, time + 5000));
+            }
+        }
+    }
+
+    @Test
+    void rebuildAfterMutationsMatchesBruteForce() {
+        Random random = new Random(11);
+        List<Interval<Integer>> expected = TestIntervals.random(random, 20000, 1000000, 3000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(expected);
+        expected = new ArrayList<Interval<Integer>>(expected);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 500; i++) {
+                if (random.nextBoolean()) {
+                    tree.removeInterval(expected.remove(random.nextInt(expected.size())));
+                } else {
+                    long start = random.nextInt(1000000);
+                    Interval<Integer> interval = new Interval<Integer>(start, start + 1 + random.nextInt(3000), -1 - i);
+                    tree.addInterval(interval);
+                    expected.add(interval);
+                }
+            }
+            tree.build();
+            for (int query = 0; query < 100; query++) {
+                long time = random.nextInt(1000000);
+                assertSameIntervals(containing(expected, time), tree.getIntervals(time));
+            }
+        }
+    }
+
+    /**
+     * Check every interval of the subtree lies within (low, high) and holds its node's center,
+     * collecting them
+     *
+     * @return the number of intervals in the subtree, matching its recorded size
+     */
+    private static int check(IntervalNode<Integer> node, long low, long high, List<Interval<Integer>> held) {
+        if (node == null)
+            return 0;
+        long center = node.getCenter();
+        for (Interval<Integer> interval : node.getStartOrdered()) {
+            assertTrue(interval.getStart() <= center && interval.getEnd() >= center);
+            assertTrue(interval.getStart() > low && interval.getEnd() < high);
+            held.add(interval);
+        }
+        int size = node.getStartOrdered().length
+                + check(node.getLeft(), low, center, held)
+                + check(node.getRight(), center, high, held);
+        assertEquals(size, node.getSubtreeSize());
+        return size;
+    }
+}
@@ -0,0 +1,70 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalSpliteratorTest {
+
+    @Test
+    void streamsMatchBruteForce() {
+        Random random = new Random(60);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 20000, 1000000, 5000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        assertSameIntervals(intervals, tree.stream().collect(Collectors.<Interval<Integer>>toList()));
+        assertSameIntervals(intervals, tree.parallelStream().collect(Collectors.<Interval<Integer>>toList()));
+        for (int query = 0; query < 50; query++) {
+            long start = random.nextInt(1010000) - 5000;
+            long end = start + 1 + random.nextInt(random.nextBoolean() ? 100 : 200000);
+            List<Interval<Integer>> expected = intersecting(intervals, start, end);
+            assertSameIntervals(expected, tree.stream(start, end).collect(Collectors.<Interval<Integer>>toList()));
+            assertSameIntervals(expected, tree.parallelStream(start, end).collect(Collectors.<Interval<Integer>>toList()));
+        }
+    }
+
+    @Test
+    void parallelStreamsKeepTheEncounterOrder() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(TestIntervals.random(new Random(61), 50000, 1000000, 5000));
+        List<Interval<Integer>> sequential = tree.stream().collect(Collectors.<Interval<Integer>>toList());
+        List<Interval<Integer>> parallel = tree.parallelStream().collect(Collectors.<Interval<Integer>>toList());
+        assertEquals(sequential, parallel);
+
+        List<Interval<Integer>> window = tree.stream(200000, 600000).collect(Collectors.<Interval<Integer>>toList());
+        assertEquals(window, tree.parallelStream(200000, 600000).collect(Collectors.<Interval<Integer>>toList()));
+    }
+
+    @Test
+    void splitsAreExactlySizedAndCoverEverything() {
+        List<Interval<Integer>> intervals = TestIntervals.random(new Random(62), 10000, 1000000, 5000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        Deque<Spliterator<Interval<Integer>>> parts = new ArrayDeque<Spliterator<Interval<Integer>>>();
+        parts.add(tree.spliterator());
+        List<Interval<Integer>> seen = new ArrayList<Interval<Integer>>();
+        int splits = 0;
+        while (!parts.isEmpty()) {
+            Spliterator<Interval<Integer>> part = parts.poll();
+            assertTrue(part.hasCharacteristics(Spliterator.SIZED));
+            assertTrue(part.hasCharacteristics(Spliterator.ORDERED));
+            long size = part.getExactSizeIfKnown();
+            Spliterator<Interval<Integer>> prefix = size > 100 ? part.trySplit() : null;
+            if (prefix != null) {
+                splits++;
+                assertEquals(size, prefix.getExactSizeIfKnown() + part.getExactSizeIfKnown());
+                parts.add(prefix);
+                parts.add(part);
+                continue;
+            }
+            int before = seen.size();
+            part.forEachRemaining(seen::add);
+            assertEquals(size, seen.size() - before);
+        }
+        assertTrue(splits > 10);
+        assertSameIntervals(intervals, seen);
+    }
+}
@@ -0,0 +1,87 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalTreeCodecTest {
+
+    private static final PayloadSerializer<Integer> INTEGERS = new PayloadSerializer<Integer>() {
+        public void write(Integer data, DataOutput out) throws IOException {
+            out.writeInt(data);
+        }
+
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    @Test
+    void roundTripAnswersLikeTheOriginal(@TempDir Path directory) throws IOException {
+        Random random = new Random(16);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 5000, 1L << 40, 1L << 30);
+        // negative starts, a long overflowing delta and an empty interval
+        intervals.add(new Interval<Integer>(-5000, -10, -1));
+        intervals.add(new Interval<Integer>(Long.MIN_VALUE / 2, Long.MAX_VALUE / 2, -2));
+        intervals.add(new Interval<Integer>(42, 42, -3));
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        Path file = directory.resolve("tree.bin");
+        IntervalTreeCodec.write(tree, INTEGERS, file);
+        IntervalTree<Integer> loaded = IntervalTreeCodec.read(file, INTEGERS);
+
+        assertEquals(intervals.size(), loaded.listSize());
+        List<Interval<Integer>> all = new ArrayList<Interval<Integer>>();
+        Iterator<Interval<Integer>> iterator = loaded.iterator();
+        while (iterator.hasNext())
+            all.add(iterator.next());
+        assertSameIntervals(intervals, all);
+        for (int query = 0; query < 200; query++) {
+            long time = (long) (random.nextDouble() * (1L << 40));
+            assertSameIntervals(containing(intervals, time), loaded.getIntervals(time));
+            assertSameIntervals(intersecting(intervals, time, time + (1L << 28)), loaded.getIntervals(time, time + (1L << 28)));
+        }
+    }
+
+    @Test
+    void intervalsComeBackOrderedByStart() throws IOException {
+        List<Interval<Integer>> intervals = TestIntervals.random(new Random(17), 1000, 100000, 500);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IntervalTreeCodec.write(intervals, INTEGERS, Channels.newChannel(bytes));
+
+        List<Interval<Integer>> read = IntervalTreeCodec.readIntervals(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), INTEGERS);
+        assertSameIntervals(intervals, read);
+        for (int i = 1; i < read.size(); i++)
+            assertTrue(read.get(i - 1).getStart() <= read.get(i).getStart());
+    }
+
+    @Test
+    void corruptOrTruncatedFilesAreRejected(@TempDir Path directory) throws IOException {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(TestIntervals.random(new Random(18), 100, 10000, 100));
+        Path file = directory.resolve("tree.bin");
+        IntervalTreeCodec.write(tree, INTEGERS, file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] flipped = bytes.clone();
+        flipped[bytes.length / 2] ^= 0x10;
+        Files.write(file, flipped);
+        assertThrows(IOException.class, () -> IntervalTreeCodec.read(file, INTEGERS));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> IntervalTreeCodec.read(file, INTEGERS));
+
+        byte[] foreign = bytes.clone();
+        foreign[0] ^= 0x01;
+        Files.write(file, foreign);
+        assertThrows(IOException.class, () -> IntervalTreeCodec.read(file, INTEGERS));
+    }
+}
@@ -0,0 +1,75 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalTreeIteratorTest {
+
+    @Test
+    void iteratorsReturnEveryIntervalPastTheBorder() {
+        Random random = new Random(50);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 5000, 100000, 2000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        for (int query = 0; query < 100; query++) {
+            long border = random.nextInt(106000) - 3000;
+            List<Interval<Integer>> startingAfter = new ArrayList<Interval<Integer>>();
+            List<Interval<Integer>> endingBefore = new ArrayList<Interval<Integer>>();
+            for (Interval<Integer> interval : intervals) {
+                if (interval.getStart() >= border)
+                    startingAfter.add(interval);
+                if (interval.getEnd() <= border)
+                    endingBefore.add(interval);
+            }
+            assertSameIntervals(startingAfter, drain(tree.getIterator(border, IteratorDirection.FORWARD)));
+            assertSameIntervals(endingBefore, drain(tree.getIterator(border, IteratorDirection.BACKWARD)));
+        }
+    }
+
+    @Test
+    void seekMatchesAFreshIterator() {
+        Random random = new Random(51);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(TestIntervals.random(random, 3000, 100000, 2000));
+        for (IteratorDirection direction : Arrays.asList(IteratorDirection.FORWARD, IteratorDirection.BACKWARD)) {
+            IntervalTreeIterator<Integer> reused = tree.getIterator(0, direction);
+            for (int query = 0; query < 50; query++) {
+                // stop part way through before seeking
+                for (int i = random.nextInt(100); i > 0 && reused.hasNext(); i--)
+                    reused.next();
+                long border = random.nextInt(100000);
+                reused.seek(border);
+                assertEquals(drain(tree.getIterator(border, direction)), drain(reused));
+            }
+        }
+    }
+
+    @Test
+    void nodesAreWalkedInCenterOrder() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(TestIntervals.random(new Random(52), 2000, 100000, 500));
+        List<Interval<Integer>> forward = drain(tree.getIterator(Long.MIN_VALUE, IteratorDirection.FORWARD));
+        List<Interval<Integer>> backward = drain(tree.getIterator(Long.MAX_VALUE, IteratorDirection.BACKWARD));
+        assertEquals(2000, forward.size());
+        assertEquals(2000, backward.size());
+
+        // nodes are walked in center order, so no interval lies wholly after the one it precedes
+        for (int i = 1; i < forward.size(); i++)
+            assertTrue(forward.get(i - 1).getStart() <= forward.get(i).getEnd());
+        for (int i = 1; i < backward.size(); i++)
+            assertTrue(backward.get(i - 1).getEnd() >= backward.get(i).getStart());
+
+        IntervalTreeIterator<Integer> empty = new IntervalTree<Integer>().getIterator(0, IteratorDirection.FORWARD);
+        assertFalse(empty.hasNext());
+        assertNull(empty.next());
+    }
+
+    private static List<Interval<Integer>> drain(Iterator<Interval<Integer>> iterator) {
+        List<Interval<Integer>> result = new ArrayList<Interval<Integer>>();
+        while (iterator.hasNext())
+            result.add(iterator.next());
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalTreeMetricsTest {
+
+    @Test
+    void listenerSeesEveryQueryWithBruteForceResultCounts() {
+        Random random = new Random(90);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 3000, 100000, 2000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+        IntervalTreeMetrics metrics = new IntervalTreeMetrics();
+        tree.setListener(metrics);
+
+        long stabResults = 0;
+        long rangeResults = 0;
+        for (int query = 0; query < 200; query++) {
+            long time = random.nextInt(100000);
+            stabResults += containing(intervals, time).size();
+            assertEquals(containing(intervals, time).size(), tree.get(time).size());
+            rangeResults += intersecting(intervals, time, time + 300).size();
+            assertEquals(intersecting(intervals, time, time + 300).size(), tree.get(time, time + 300).size());
+        }
+        assertEquals(200, metrics.getStabs().getCount());
+        assertEquals(200, metrics.getRangeQueries().getCount());
+        assertEquals(stabResults, metrics.getStabResults());
+        assertEquals(rangeResults, metrics.getRangeQueryResults());
+
+        tree.addInterval(0, 10, -1);
+        tree.build();
+        assertEquals(1, metrics.getRebuilds().getCount());
+        assertEquals(3001, metrics.getLastStats().getIntervals());
+
+        Iterator<Interval<Integer>> iterator = tree.getIterator(50000, IteratorDirection.FORWARD);
+        int steps = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            steps++;
+        }
+        assertEquals(steps, metrics.getIteratorSteps());
+
+        tree.setListener(null);
+        tree.get(5);
+        assertEquals(200, metrics.getStabs().getCount());
+    }
+
+    @Test
+    void enabledRecordingReceivesQueryEvents(@TempDir Path directory) throws IOException {
+        Random random = new Random(91);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 3000, 100000, 2000);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+        tree.build();
+        assertFalse(IntervalTreeEvents.STAB.isEnabled());
+
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        Path file = directory.resolve("queries.jfr");
+        Recording recording = new Recording();
+        try {
+            recording.enable(IntervalTreeEvents.Stab.class).withoutThreshold();
+            recording.start();
+            assertTrue(IntervalTreeEvents.STAB.isEnabled());
+            for (int query = 0; query < 50; query++) {
+                long time = random.nextInt(100000);
+                expected.put(time, containing(intervals, time).size());
+                assertEquals(expected.get(time).intValue(), tree.get(time).size());
+                tree.get(time, time + 100);
+            }
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+        }
+
+        Map<Long, Integer> recorded = new HashMap<Long, Integer>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            // range queries are recorded too, but only beyond their threshold
+            if (event.getEventType().getName().equals("com.kg.smartfactory.IntervalTreeStab"))
+                recorded.put(event.getLong("time"), event.getInt("results"));
+        }
+        assertEquals(expected, recorded);
+    }
+}
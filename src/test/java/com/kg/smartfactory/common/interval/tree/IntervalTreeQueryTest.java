@@ -0,0 +1,53 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+
+class IntervalTreeQueryTest {
+
+    @Test
+    void stabAndRangeQueriesMatchBruteForce() {
+        Random random = new Random(2);
+        // short sparse intervals, then long ones piling up into wide nodes
+        long[] maxLengths = {20, 500, 50000};
+        for (long maxLength : maxLengths) {
+            List<Interval<Integer>> intervals = random(random, 3000, 100000, maxLength);
+            IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+            for (int query = 0; query < 500; query++) {
+                long time = random.nextInt(110000) - 5000;
+                assertSameIntervals(containing(intervals, time), tree.getIntervals(time));
+                assertSameData(data(containing(intervals, time)), tree.get(time));
+
+                long end = time + random.nextInt(3000) - 100;
+                assertSameIntervals(intersecting(intervals, time, end), tree.getIntervals(time, end));
+                assertSameData(data(intersecting(intervals, time, end)), tree.get(time, end));
+            }
+        }
+    }
+
+    @Test
+    void queriesSeeMutationsAfterRebuild() {
+        Random random = new Random(3);
+        List<Interval<Integer>> expected = random(random, 1000, 10000, 400);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(new ArrayList<Interval<Integer>>(expected));
+        for (int step = 0; step < 2000; step++) {
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                long start = random.nextInt(10000);
+                Interval<Integer> interval = new Interval<Integer>(start, start + 1 + random.nextInt(400), -step);
+                tree.addInterval(interval);
+                expected.add(interval);
+            } else if (operation == 1 && !expected.isEmpty()) {
+                tree.removeInterval(expected.remove(random.nextInt(expected.size())));
+            } else {
+                long start = random.nextInt(10400) - 200;
+                long end = start + random.nextInt(600);
+                assertSameIntervals(intersecting(expected, start, end), tree.getIntervals(start, end));
+                assertSameIntervals(containing(expected, start), tree.getIntervals(start));
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournaledIntervalTreeTest {
+
+    private static final PayloadSerializer<Integer> INTEGERS = new PayloadSerializer<Integer>() {
+        public void write(Integer data, DataOutput out) throws IOException {
+            out.writeInt(data);
+        }
+
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    @Test
+    void reopenedTreeMatchesBruteForceAcrossBackgroundSnapshots(@TempDir Path directory) throws IOException {
+        Random random = new Random(80);
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>();
+        // a small threshold, so snapshots are taken many times while mutations go on
+        JournaledIntervalTree<Integer> tree = JournaledIntervalTree.open(directory, INTEGERS, 1, 8192);
+        mutate(tree, expected, random, 20000);
+        tree.close();
+        assertTrue(tree.getGeneration() > 5);
+
+        JournaledIntervalTree<Integer> reopened = JournaledIntervalTree.open(directory, INTEGERS, 1, 8192);
+        try {
+            assertEquals(tree.getGeneration(), reopened.getGeneration());
+            assertSameContents(expected, reopened, random);
+
+            mutate(reopened, expected, random, 2000);
+            reopened.snapshot();
+            assertSameContents(expected, reopened, random);
+        } finally {
+            reopened.close();
+        }
+
+        JournaledIntervalTree<Integer> again = JournaledIntervalTree.open(directory, INTEGERS);
+        try {
+            assertSameContents(expected, again, random);
+        } finally {
+            again.close();
+        }
+    }
+
+    @Test
+    void syncedMutationsSurviveACrashWithATornTail(@TempDir Path directory, @TempDir Path crashed) throws IOException {
+        Random random = new Random(81);
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>();
+        JournaledIntervalTree<Integer> tree = JournaledIntervalTree.open(directory, INTEGERS, 1000, 1 << 16);
+        try {
+            mutate(tree, expected, random, 5000);
+            tree.sync();
+
+            // copy the files as a crash right now would leave them, with half a record appended
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files)
+                    Files.copy(file, crashed.resolve(file.getFileName()));
+            }
+            Path journal = crashed.resolve("journal-" + tree.getGeneration() + ".bin");
+            Files.write(journal, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        } finally {
+            tree.close();
+        }
+
+        JournaledIntervalTree<Integer> recovered = JournaledIntervalTree.open(crashed, INTEGERS);
+        try {
+            assertSameContents(expected, recovered, random);
+            // the torn tail is dropped, so new records follow the last valid one
+            recovered.addInterval(1, 2, -1);
+            expected.add(new Interval<Integer>(1, 2, -1));
+        } finally {
+            recovered.close();
+        }
+        JournaledIntervalTree<Integer> reopened = JournaledIntervalTree.open(crashed, INTEGERS);
+        try {
+            assertSameContents(expected, reopened, random);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void mutate(JournaledIntervalTree<Integer> tree, List<Interval<Integer>> expected,
+                               Random random, int steps) {
+        for (int step = 0; step < steps; step++) {
+            int action = random.nextInt(20);
+            if (action < 13 || expected.isEmpty()) {
+                long start = random.nextInt(100000);
+                Interval<Integer> interval = new Interval<Integer>(start, start + 1 + random.nextInt(3000), step);
+                tree.addInterval(interval);
+                expected.add(interval);
+            } else if (action < 19) {
+                Interval<Integer> interval = expected.remove(random.nextInt(expected.size()));
+                tree.removeInterval(new Interval<Integer>(interval.getStart(), interval.getEnd(), interval.getData()));
+            } else if (random.nextInt(50) == 0) {
+                tree.clear();
+                expected.clear();
+            } else {
+                List<Interval<Integer>> removed = new ArrayList<Interval<Integer>>();
+                for (int i = 0; i < 5 && !expected.isEmpty(); i++)
+                    removed.add(expected.remove(random.nextInt(expected.size())));
+                tree.removeIntervals(removed);
+            }
+        }
+    }
+
+    private static void assertSameContents(List<Interval<Integer>> expected, IntervalTree<Integer> tree, Random random) {
+        assertEquals(expected.size(), tree.listSize());
+        for (int query = 0; query < 100; query++) {
+            long time = random.nextInt(104000);
+            assertSameIntervals(containing(expected, time), tree.getIntervals(time));
+            assertSameIntervals(intersecting(expected, time, time + 800), tree.getIntervals(time, time + 800));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedIntervalForestTest {
+
+    private static final int KEYS = 300;
+    private static final int SPAN = 10000;
+
+    @Test
+    void queriesMatchBruteForceAcrossMutations() {
+        Random random = new Random(250);
+        KeyedIntervalForest<Integer, Integer> forest = new KeyedIntervalForest<Integer, Integer>();
+        Map<Integer, List<Interval<Integer>>> expected = new HashMap<Integer, List<Interval<Integer>>>();
+        int next = 0;
+
+        for (int round = 0; round < 40; round++) {
+            // some rounds touch few keys, keeping the cross-key index, others enough to drop it
+            int changes = random.nextBoolean() ? 20 : 2000;
+            for (int change = 0; change < changes; change++) {
+                int key = random.nextInt(KEYS);
+                List<Interval<Integer>> intervals = expected.get(key);
+                int action = random.nextInt(20);
+                if (action < 12 || intervals == null) {
+                    Interval<Integer> interval;
+                    if (intervals != null && random.nextInt(10) == 0) {
+                        interval = intervals.get(random.nextInt(intervals.size()));
+                    } else {
+                        long start = random.nextInt(SPAN);
+                        long length = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(300);
+                        interval = new Interval<Integer>(start, start + length, next++ % 50);
+                    }
+                    forest.addInterval(key, interval.getStart(), interval.getEnd(), interval.getData());
+                    if (intervals == null)
+                        expected.put(key, intervals = new ArrayList<Interval<Integer>>());
+                    intervals.add(interval);
+                } else if (action < 18) {
+                    Interval<Integer> interval = intervals.get(random.nextInt(intervals.size()));
+                    assertTrue(forest.removeInterval(key, interval.getStart(), interval.getEnd(), interval.getData()));
+                    intervals.remove(interval);
+                    if (intervals.isEmpty())
+                        expected.remove(key);
+                } else if (action < 19) {
+                    assertFalse(forest.removeInterval(key, -10, -5, 0));
+                } else {
+                    assertEquals(intervals.size(), forest.removeKey(key));
+                    expected.remove(key);
+                }
+            }
+            if (round == 30) {
+                forest.clear();
+                expected.clear();
+            }
+            assertMatches(random, forest, expected);
+        }
+    }
+
+    @Test
+    void emptyIntervalsIntersectOnlyWindowsAroundThem() {
+        KeyedIntervalForest<String, Integer> forest = new KeyedIntervalForest<String, Integer>();
+        forest.addInterval("a", 0, 5, 1);
+        forest.addInterval("b", 5, 5, 2);
+        forest.addInterval("c", 5, 8, 3);
+
+        assertEquals(Collections.<Integer>emptyList(), forest.get("b", 5));
+        assertEquals(Arrays.asList(2), forest.get("b", 4, 6));
+        assertEquals(Collections.<Integer>emptyList(), forest.get("b", 5, 6));
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), forest.getKeys(4, 6));
+        assertEquals(new HashSet<String>(Arrays.asList("c")), forest.getKeys(5, 6));
+        assertEquals(Collections.<String>emptySet(), forest.getKeys(5, 5));
+    }
+
+    @Test
+    void keysSharingOneSegmentAreAllFound() {
+        KeyedIntervalForest<Integer, Integer> forest = new KeyedIntervalForest<Integer, Integer>();
+        for (int key = 0; key < 200000; key++)
+            forest.addInterval(key, 0, 10, key);
+
+        assertEquals(200000, forest.getKeys(0, 10).size());
+        assertEquals(200000, forest.getKeys(9, 20).size());
+        assertEquals(Collections.<Integer>emptySet(), forest.getKeys(10, 20));
+    }
+
+    @Test
+    void reindexOfShiftAlignedKeysStaysFast() {
+        final KeyedIntervalForest<Integer, Integer> forest = new KeyedIntervalForest<Integer, Integer>();
+        for (int key = 0; key < 30000; key++) {
+            for (int shift = 0; shift < 30; shift++)
+                forest.addInterval(key, shift * 480L, shift * 480L + 480, shift);
+        }
+
+        // ties between keys used to be broken by comparing the toString of their timelines
+        Set<Integer> keys = assertTimeout(Duration.ofSeconds(5), new ThrowingSupplier<Set<Integer>>() {
+            public Set<Integer> get() {
+                return forest.getKeys(1000, 1001);
+            }
+        });
+        assertEquals(30000, keys.size());
+    }
+
+    @Test
+    void removalsBeforeAndAfterBuildKeepOrder() {
+        KeyedIntervalForest<String, Integer> forest = new KeyedIntervalForest<String, Integer>();
+        for (int i = 0; i < 10; i++)
+            forest.addInterval("m", 10 - i, 20, i);
+        assertEquals(10, forest.get("m", 15).size());
+
+        // one removal from the sorted intervals, one from those added since the build
+        forest.addInterval("m", 0, 20, 10);
+        forest.addInterval("m", 0, 20, 10);
+        assertTrue(forest.removeInterval("m", 5, 20, 5));
+        assertTrue(forest.removeInterval("m", 0, 20, 10));
+        assertFalse(forest.removeInterval("m", 5, 20, 5));
+        assertFalse(forest.inSync("m"));
+
+        assertEquals(Arrays.asList(10, 9, 8, 7, 6, 4, 3, 2, 1, 0), forest.get("m", 15));
+        assertTrue(forest.inSync("m"));
+        assertEquals(10, forest.size("m"));
+    }
+
+    private static void assertMatches(Random random, KeyedIntervalForest<Integer, Integer> forest,
+                                      Map<Integer, List<Interval<Integer>>> expected) {
+        int total = 0;
+        for (List<Interval<Integer>> intervals : expected.values())
+            total += intervals.size();
+        assertEquals(total, forest.size());
+        assertEquals(expected.keySet(), forest.keySet());
+
+        for (int query = 0; query < 100; query++) {
+            int key = random.nextInt(KEYS);
+            List<Interval<Integer>> intervals = expected.containsKey(key)
+                    ? expected.get(key) : Collections.<Interval<Integer>>emptyList();
+            assertEquals(intervals.size(), forest.size(key));
+
+            long time = random.nextInt(SPAN + 300);
+            TestIntervals.assertSameData(TestIntervals.data(TestIntervals.containing(intervals, time)),
+                    forest.get(key, time));
+
+            long start = random.nextInt(SPAN + 300);
+            long end = start + random.nextInt(random.nextBoolean() ? 5 : 1000);
+            TestIntervals.assertSameData(TestIntervals.data(TestIntervals.intersecting(intervals, start, end)),
+                    forest.get(key, start, end));
+            assertAscending(forest, key, start, end);
+
+            Set<Integer> keys = new HashSet<Integer>();
+            for (Map.Entry<Integer, List<Interval<Integer>>> entry : expected.entrySet()) {
+                if (!TestIntervals.intersecting(entry.getValue(), start, end).isEmpty())
+                    keys.add(entry.getKey());
+            }
+            assertEquals(keys, forest.getKeys(start, end));
+        }
+    }
+
+    private static void assertAscending(KeyedIntervalForest<Integer, Integer> forest, int key, long start, long end) {
+        final List<Long> starts = new ArrayList<Long>();
+        forest.forEachIntersecting(key, start, end, new IntervalVisitor<Integer>() {
+            public void visit(long start, long end, Integer data) {
+                starts.add(start);
+            }
+        });
+        List<Long> sorted = new ArrayList<Long>(starts);
+        Collections.sort(sorted);
+        assertEquals(sorted, starts);
+    }
+}
@@ -0,0 +1,57 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedIntervalTreeTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedQueriesMatchBruteForce() throws IOException {
+        Random random = new Random(5);
+        List<Interval<Integer>> intervals = random(random, 5000, 100000, 2000);
+        Path file = directory.resolve("tree.bin");
+        IntervalTreeFileWriter.write(new IntervalTree<Integer>(intervals), new ToLongFunction<Integer>() {
+            public long applyAsLong(Integer data) {
+                return data;
+            }
+        }, file);
+
+        MappedIntervalTree mapped = MappedIntervalTree.open(file);
+        try {
+            assertEquals(intervals.size(), mapped.size());
+            for (int query = 0; query < 1000; query++) {
+                long time = random.nextInt(104000) - 2000;
+                long end = time + random.nextInt(3000);
+
+                List<Interval<Integer>> visited = new ArrayList<Interval<Integer>>();
+                mapped.forEachContaining(time, collector(visited));
+                assertSameIntervals(containing(intervals, time), visited);
+
+                visited.clear();
+                mapped.forEachIntersecting(time, end, collector(visited));
+                assertSameIntervals(intersecting(intervals, time, end), visited);
+            }
+        } finally {
+            mapped.close();
+        }
+    }
+
+    private static IntervalIdVisitor collector(final List<Interval<Integer>> visited) {
+        return new IntervalIdVisitor() {
+            public void visit(long start, long end, long payloadId) {
+                visited.add(new Interval<Integer>(start, end, (int) payloadId));
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NeighbourQueryTest {
+
+    @Test
+    void neighboursMatchBruteForce() {
+        Random random = new Random(120);
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 3000, 100000, 500);
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(intervals);
+
+        for (int query = 0; query < 300; query++) {
+            long time = random.nextInt(104000) - 2000;
+
+            Interval<Integer> first = null;
+            Interval<Integer> last = null;
+            for (Interval<Integer> interval : intervals) {
+                if (interval.getStart() >= time && (first == null || interval.getStart() < first.getStart()
+                        || interval.getStart() == first.getStart() && interval.getEnd() < first.getEnd()))
+                    first = interval;
+                if (interval.getEnd() <= time && (last == null || interval.getEnd() > last.getEnd()
+                        || interval.getEnd() == last.getEnd() && interval.getStart() > last.getStart()))
+                    last = interval;
+            }
+            assertSameBounds(first, tree.firstStartingAtOrAfter(time));
+            assertSameBounds(last, tree.lastEndingAtOrBefore(time));
+
+            int count = random.nextInt(50);
+            List<Long> distances = new ArrayList<Long>();
+            for (Interval<Integer> interval : intervals)
+                distances.add(distance(interval, time));
+            Collections.sort(distances);
+
+            List<Interval<Integer>> nearest = tree.nearest(time, count);
+            assertEquals(count, nearest.size());
+            List<Long> found = new ArrayList<Long>();
+            for (Interval<Integer> interval : nearest)
+                found.add(distance(interval, time));
+            assertEquals(distances.subList(0, count), found);
+            // each interval returned at most as often as it was added
+            for (Interval<Integer> interval : nearest)
+                assertTrue(Collections.frequency(nearest, interval) <= Collections.frequency(intervals, interval));
+        }
+    }
+
+    @Test
+    void neighboursOfAnEmptyOrExhaustedTree() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>();
+        assertNull(tree.firstStartingAtOrAfter(0));
+        assertNull(tree.lastEndingAtOrBefore(0));
+        assertTrue(tree.nearest(0, 5).isEmpty());
+
+        tree.addInterval(10, 20, 1);
+        tree.addInterval(Long.MIN_VALUE, Long.MIN_VALUE + 1, 2);
+        tree.addInterval(Long.MAX_VALUE - 1, Long.MAX_VALUE, 3);
+        assertNull(tree.firstStartingAtOrAfter(Long.MAX_VALUE));
+        assertEquals(2, (int) tree.lastEndingAtOrBefore(0).getData());
+        // gaps beyond the range of long still order correctly
+        assertEquals(Arrays.asList(1, 2, 3), TestIntervals.data(tree.nearest(-5, 3)));
+        assertEquals(3, tree.nearest(0, 10).size());
+        assertThrows(IllegalArgumentException.class, () -> tree.nearest(0, -1));
+    }
+
+    private static long distance(Interval<?> interval, long time) {
+        if (interval.getStart() > time)
+            return interval.getStart() - time;
+        return interval.getEnd() <= time ? time - interval.getEnd() : 0;
+    }
+
+    private static void assertSameBounds(Interval<Integer> expected, Interval<Integer> actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+    }
+}
@@ -0,0 +1,61 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheTest {
+
+    @Test
+    void cachedQueriesMatchBruteForceAcrossMutations() {
+        Random random = new Random(100);
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>(TestIntervals.random(random, 3000, 100000, 2000));
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(expected);
+        tree.enableCache(32);
+
+        // a small set of dashboard-like ranges asked again and again
+        long[] starts = new long[40];
+        for (int i = 0; i < starts.length; i++)
+            starts[i] = random.nextInt(100000);
+
+        for (int step = 0; step < 5000; step++) {
+            int action = random.nextInt(10);
+            if (action == 0) {
+                long start = random.nextInt(100000);
+                // some empty, which still intersect the ranges strictly around them
+                Interval<Integer> interval = new Interval<Integer>(start, start + random.nextInt(2000), -1 - step);
+                tree.addInterval(interval);
+                expected.add(interval);
+            } else if (action == 1) {
+                tree.removeInterval(expected.remove(random.nextInt(expected.size())));
+            } else {
+                long start = starts[random.nextInt(starts.length)];
+                assertSameIntervals(intersecting(expected, start, start + 1000), tree.getIntervals(start, start + 1000));
+                assertSameData(data(intersecting(expected, start, start + 1000)), tree.get(start, start + 1000));
+            }
+        }
+
+        QueryCacheStats stats = tree.getCacheStats();
+        assertTrue(stats.getHits() > 0);
+        assertTrue(stats.getInvalidations() > 0);
+        assertTrue(stats.getEvictions() > 0);
+        assertTrue(stats.getEntries() <= 32);
+    }
+
+    @Test
+    void cacheIsBoundedByIntervalsHeldAndDroppedOnClear() {
+        IntervalTree<Integer> tree = new IntervalTree<Integer>(TestIntervals.random(new Random(101), 2000, 10000, 1000));
+        tree.enableCache(1000, 500);
+        for (long start = 0; start < 10000; start += 100)
+            tree.getIntervals(start, start + 100);
+        assertTrue(tree.getCacheStats().getIntervals() <= 500);
+
+        tree.clear();
+        assertTrue(tree.getIntervals(0, 10000).isEmpty());
+        tree.disableCache();
+        assertNull(tree.getCacheStats());
+    }
+}
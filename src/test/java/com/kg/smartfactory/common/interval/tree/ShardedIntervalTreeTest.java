@@ -0,0 +1,165 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedIntervalTreeTest {
+
+    @Test
+    void queriesMatchBruteForceAcrossBucketsAndOverflow() {
+        Random random = new Random(7);
+        // lengths up to 20 buckets, so some intervals go to the overflow tree
+        List<Interval<Integer>> intervals = TestIntervals.random(random, 5000, 100000, 20000);
+        ShardedIntervalTree<Integer> tree = new ShardedIntervalTree<Integer>(1000, 8);
+        for (Interval<Integer> interval : intervals)
+            tree.addInterval(interval);
+
+        List<Interval<Integer>> expected = new ArrayList<Interval<Integer>>(intervals);
+        for (int i = 0; i < 1000; i++)
+            tree.removeInterval(expected.remove(random.nextInt(expected.size())));
+        tree.build();
+
+        for (int query = 0; query < 300; query++) {
+            long time = random.nextInt(125000) - 2000;
+            assertSameIntervals(containing(expected, time), tree.getIntervals(time));
+            long end = time + 1 + random.nextInt(random.nextBoolean() ? 100 : 30000);
+            assertSameIntervals(intersecting(expected, time, end), tree.getIntervals(time, end));
+            assertSameData(data(intersecting(expected, time, end)), tree.get(time, end));
+        }
+    }
+
+    @Test
+    void overflowTreeIsConsultedOnlyWhileNotEmpty() {
+        ShardedIntervalTree<Integer> tree = new ShardedIntervalTree<Integer>(10, 2);
+        tree.addInterval(0, 5, 1);
+        Interval<Integer> wide = new Interval<Integer>(0, 1000, 2);
+        tree.addInterval(wide);
+        assertSameData(Arrays.asList(1, 2), tree.get(3));
+        assertSameData(Arrays.asList(2), tree.get(500, 501));
+
+        tree.removeInterval(wide);
+        assertSameData(Arrays.asList(1), tree.get(3));
+        assertTrue(tree.get(500, 501).isEmpty());
+
+        tree.addInterval(wide);
+        tree.clear();
+        assertTrue(tree.get(3).isEmpty());
+    }
+
+    @Test
+    void emptiedBucketsAreDropped() {
+        ShardedIntervalTree<Integer> tree = new ShardedIntervalTree<Integer>(10, 4);
+        Interval<Integer> spanning = new Interval<Integer>(5, 25, 1);
+        tree.addInterval(spanning);
+        tree.addInterval(12, 15, 2);
+        assertEquals(3, tree.shardCount());
+
+        tree.removeInterval(spanning);
+        assertEquals(1, tree.shardCount());
+        assertSameData(Arrays.asList(2), tree.get(0, 30));
+
+        tree.addInterval(spanning);
+        assertEquals(3, tree.shardCount());
+        assertSameData(Arrays.asList(1, 2), tree.get(14));
+        assertSameData(Arrays.asList(1), tree.get(24));
+    }
+
+    @Test
+    void clearNeverLeavesPartOfASpanningInterval() throws Exception {
+        final ShardedIntervalTree<Integer> tree = new ShardedIntervalTree<Integer>(100, 8);
+        final List<Interval<Integer>> intervals = new ArrayList<Interval<Integer>>();
+        Random random = new Random(12);
+        for (int i = 0; i < 20000; i++) {
+            long start = random.nextInt(100000);
+            intervals.add(new Interval<Integer>(start, start + 100 + random.nextInt(500), i));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> tasks = new ArrayList<Future<?>>();
+            for (int writer = 0; writer < 2; writer++) {
+                final int offset = writer;
+                tasks.add(pool.submit(new Runnable() {
+                    public void run() {
+                        for (int i = offset; i < intervals.size(); i += 2)
+                            tree.addInterval(intervals.get(i));
+                    }
+                }));
+            }
+            tasks.add(pool.submit(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 50; i++) {
+                        tree.clear();
+                        Thread.yield();
+                    }
+                }
+            }));
+            for (Future<?> task : tasks)
+                task.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        // each interval is stored in every bucket it overlaps or in none
+        for (Interval<Integer> interval : intervals) {
+            int found = 0;
+            int buckets = 0;
+            for (long bucket = interval.getStart() / 100; bucket * 100 < interval.getEnd(); bucket++) {
+                long time = Math.max(interval.getStart(), bucket * 100);
+                if (tree.getIntervals(time).contains(interval))
+                    found++;
+                buckets++;
+            }
+            assertTrue(found == 0 || found == buckets,
+                    "Found [" + interval.getStart() + ", " + interval.getEnd() + ") in " + found + " of " + buckets);
+        }
+    }
+
+    @Test
+    void concurrentWritersAndReaders() throws Exception {
+        final ShardedIntervalTree<Integer> tree = new ShardedIntervalTree<Integer>(1000, 4);
+        final List<Interval<Integer>> intervals = TestIntervals.random(new Random(8), 8000, 100000, 8000);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<Future<?>>();
+            for (int writer = 0; writer < 2; writer++) {
+                final int offset = writer;
+                tasks.add(pool.submit(new Runnable() {
+                    public void run() {
+                        for (int i = offset; i < intervals.size(); i += 2)
+                            tree.addInterval(intervals.get(i));
+                    }
+                }));
+            }
+            for (int reader = 0; reader < 2; reader++) {
+                final long seed = reader;
+                tasks.add(pool.submit(new Runnable() {
+                    public void run() {
+                        Random random = new Random(seed);
+                        for (int query = 0; query < 2000; query++) {
+                            long time = random.nextInt(100000);
+                            for (Interval<Integer> interval : tree.getIntervals(time, time + 100))
+                                assertTrue(interval.getEnd() > time && interval.getStart() < time + 100);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks)
+                task.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        Random random = new Random(9);
+        for (int query = 0; query < 200; query++) {
+            long time = random.nextInt(110000);
+            assertSameIntervals(containing(intervals, time), tree.getIntervals(time));
+            assertSameIntervals(intersecting(intervals, time, time + 3000), tree.getIntervals(time, time + 3000));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.kg.smartfactory.common.interval.tree.TestIntervals.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowIntervalTreeTest {
+
+    @Test
+    void windowMatchesBruteForceAsTheWatermarkAdvances() {
+        Random random = new Random(40);
+        long retention = 5000;
+        SlidingWindowIntervalTree<Integer> window = new SlidingWindowIntervalTree<Integer>(retention);
+        List<Interval<Integer>> kept = new ArrayList<Interval<Integer>>();
+
+        long latestStart = Long.MIN_VALUE;
+        for (int i = 0; i < 20000; i++) {
+            // roughly in time order, some arriving late
+            long start = i * 10L - random.nextInt(3000);
+            Interval<Integer> interval = new Interval<Integer>(start, start + 1 + random.nextInt(8000), i);
+            latestStart = Math.max(latestStart, start);
+            long watermark = latestStart - retention;
+
+            boolean added = window.addInterval(interval);
+            assertEquals(interval.getEnd() > watermark, added);
+            assertEquals(watermark, window.getWatermark());
+            if (added)
+                kept.add(interval);
+            if (random.nextInt(20) == 0 && !kept.isEmpty()) {
+                // only found while not yet evicted
+                Interval<Integer> removed = kept.remove(random.nextInt(kept.size()));
+                assertEquals(removed.getEnd() > watermark, window.removeInterval(removed));
+            }
+
+            if (i % 500 == 0) {
+                List<Interval<Integer>> live = new ArrayList<Interval<Integer>>();
+                for (Interval<Integer> candidate : kept) {
+                    if (candidate.getEnd() > watermark)
+                        live.add(candidate);
+                }
+                kept = live;
+                assertEquals(kept.size(), window.currentSize());
+                for (int query = 0; query < 20; query++) {
+                    long time = watermark + random.nextInt(15000);
+                    assertSameIntervals(containing(kept, time), window.getIntervals(time));
+                    assertSameIntervals(intersecting(kept, time, time + 2000), window.getIntervals(time, time + 2000));
+                }
+            }
+        }
+    }
+
+    @Test
+    void explicitWatermarkEvictsEndedIntervalsOnly() {
+        SlidingWindowIntervalTree<Integer> window = new SlidingWindowIntervalTree<Integer>();
+        window.addInterval(0, 10, 1);
+        window.addInterval(0, 10, 1);
+        window.addInterval(5, 20, 2);
+        window.addInterval(8, 30, 3);
+
+        assertEquals(2, window.advanceWatermark(10));
+        assertEquals(0, window.advanceWatermark(5));
+        assertEquals(10, window.getWatermark());
+        assertSameData(Arrays.asList(2, 3), window.get(9));
+        assertFalse(window.addInterval(2, 10, 4));
+        assertTrue(window.addInterval(2, 11, 5));
+
+        // a removed interval's heap entry is skipped when it expires
+        assertTrue(window.removeInterval(new Interval<Integer>(5, 20, 2)));
+        assertEquals(1, window.advanceWatermark(20));
+        assertSameData(Arrays.asList(3), window.get(20, 40));
+        assertEquals(1, window.currentSize());
+    }
+}
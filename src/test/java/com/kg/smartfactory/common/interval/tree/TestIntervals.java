@@ -0,0 +1,89 @@
+package com.kg.smartfactory.common.interval.tree;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Random interval sets and brute-force answers to check the trees against
+ */
+final class TestIntervals {
+
+    static final Comparator<Interval<Integer>> BY_START_END_DATA = new Comparator<Interval<Integer>>() {
+        @Override
+        public int compare(Interval<Integer> interval1, Interval<Integer> interval2) {
+            if (interval1.getStart() != interval2.getStart())
+                return Long.compare(interval1.getStart(), interval2.getStart());
+            if (interval1.getEnd() != interval2.getEnd())
+                return Long.compare(interval1.getEnd(), interval2.getEnd());
+            return Integer.compare(interval1.getData(), interval2.getData());
+        }
+    };
+
+    private TestIntervals() {
+    }
+
+    /**
+     * @return count non-empty intervals starting in [0, span), at most maxLength long,
+     * with their index as data and about one in ten repeating the previous one
+     */
+    static List<Interval<Integer>> random(Random random, int count, long span, long maxLength) {
+        List<Interval<Integer>> intervals = new ArrayList<Interval<Integer>>(count);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextInt(10) == 0) {
+                intervals.add(intervals.get(i - 1));
+                continue;
+            }
+            long start = (long) (random.nextDouble() * span);
+            intervals.add(new Interval<Integer>(start, start + 1 + (long) (random.nextDouble() * maxLength), i));
+        }
+        return intervals;
+    }
+
+    static List<Interval<Integer>> containing(Collection<Interval<Integer>> intervals, long time) {
+        List<Interval<Integer>> result = new ArrayList<Interval<Integer>>();
+        for (Interval<Integer> interval : intervals) {
+            if (interval.contains(time))
+                result.add(interval);
+        }
+        return result;
+    }
+
+    static List<Interval<Integer>> intersecting(Collection<Interval<Integer>> intervals, long start, long end) {
+        List<Interval<Integer>> result = new ArrayList<Interval<Integer>>();
+        for (Interval<Integer> interval : intervals) {
+            if (interval.getEnd() > start && interval.getStart() < end)
+                result.add(interval);
+        }
+        return result;
+    }
+
+    static List<Integer> data(Collection<Interval<Integer>> intervals) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (Interval<Integer> interval : intervals)
+            result.add(interval.getData());
+        return result;
+    }
+
+    /**
+     * Assert both hold the same intervals with the same multiplicities, in any order
+     */
+    static void assertSameIntervals(Collection<Interval<Integer>> expected, Collection<Interval<Integer>> actual) {
+        List<Interval<Integer>> sortedExpected = new ArrayList<Interval<Integer>>(expected);
+        List<Interval<Integer>> sortedActual = new ArrayList<Interval<Integer>>(actual);
+        Collections.sort(sortedExpected, BY_START_END_DATA);
+        Collections.sort(sortedActual, BY_START_END_DATA);
+        assertEquals(sortedExpected, sortedActual);
+    }
+
+    /**
+     * Assert both hold the same values with the same multiplicities, in any order
+     */
+    static void assertSameData(Collection<Integer> expected, Collection<Integer> actual) {
+        List<Integer> sortedExpected = new ArrayList<Integer>(expected);
+        List<Integer> sortedActual = new ArrayList<Integer>(actual);
+        Collections.sort(sortedExpected);
+        Collections.sort(sortedActual);
+        assertEquals(sortedExpected, sortedActual);
+    }
+}